@@ -0,0 +1,66 @@
+// This file is part of the StreamTextReplacer project.
+// Copyright (C) 2022 Fernando Pettinelli
+
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// at your option any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program.  If not, see <https://www.gnu.org/licenses/>.
+
+
+package com.overwatchtips.overtrackplugin;
+
+import com.overwatchtips.overtrackplugin.records.TrackedMatch;
+
+import java.util.*;
+
+// Every known match within the lookup period, keyed by match key and ordered newest first.
+public class MatchIndex {
+
+    private static final Comparator<TrackedMatch> NEWEST_FIRST = Comparator.comparingLong(TrackedMatch::time).reversed()
+            .thenComparing(TrackedMatch::key);
+
+    private final Map<String, TrackedMatch> matchesByKey = new HashMap<>();
+    private final NavigableSet<TrackedMatch> matches = new TreeSet<>(NEWEST_FIRST);
+
+    // Adds or updates the match. Returns false if a match with the same key was already known.
+    public boolean merge(TrackedMatch match) {
+        TrackedMatch previous = matchesByKey.put(match.key(), match);
+        if (previous != null) {
+            matches.remove(previous);
+        }
+
+        matches.add(match);
+        return previous == null;
+    }
+
+    public TrackedMatch get(String key) {
+        return matchesByKey.get(key);
+    }
+
+    // Drops every match played before the cutoff (epoch seconds). Returns true if any match was dropped.
+    public boolean prune(long cutoff) {
+        boolean pruned = false;
+        while (!matches.isEmpty() && matches.last().time() < cutoff) {
+            matchesByKey.remove(matches.pollLast().key());
+            pruned = true;
+        }
+
+        return pruned;
+    }
+
+    public NavigableSet<TrackedMatch> getMatches() {
+        return Collections.unmodifiableNavigableSet(matches);
+    }
+
+    public int size() {
+        return matches.size();
+    }
+}
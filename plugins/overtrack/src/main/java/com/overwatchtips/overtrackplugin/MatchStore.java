@@ -0,0 +1,129 @@
+// This file is part of the StreamTextReplacer project.
+// Copyright (C) 2022 Fernando Pettinelli
+
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// at your option any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program.  If not, see <https://www.gnu.org/licenses/>.
+
+
+package com.overwatchtips.overtrackplugin;
+
+import com.overwatchtips.overtrackplugin.enums.GameResult;
+import com.overwatchtips.overtrackplugin.records.TrackedMatch;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Collection;
+
+// Append-only binary file of tracked matches, so the index survives restarts.
+// A match that changes is appended again, and the last record for a key wins when loading.
+public class MatchStore {
+
+    private static final int MAGIC = 0x4F54524B;
+    private static final int VERSION = 1;
+    private static final GameResult[] RESULTS = GameResult.values();
+
+    private final File file;
+    public MatchStore(File file) {
+        this.file = file;
+    }
+
+    // Loads every stored match played after the cutoff into the index.
+    // A truncated last record, e.g. from a crash mid-write, is ignored. Any other bad data throws,
+    // after the matches read before it were loaded.
+    public void load(MatchIndex index, long cutoff) throws IOException {
+        if (!file.exists()) {
+            return;
+        }
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                throw new IOException(file.getName() + " is not a match store, or was written by another version.");
+            }
+
+            while (true) {
+                TrackedMatch match = read(in);
+                if (match.time() >= cutoff) {
+                    index.merge(match);
+                }
+            }
+        } catch (EOFException ignored) {
+            // End of the file, or of its last complete record.
+        }
+    }
+
+    public void append(Collection<TrackedMatch> matches) throws IOException {
+        if (matches.isEmpty()) {
+            return;
+        }
+
+        boolean newFile = !file.exists() || file.length() == 0;
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file, true)))) {
+            if (newFile) {
+                writeHeader(out);
+            }
+
+            for (TrackedMatch match : matches) {
+                write(out, match);
+            }
+        }
+    }
+
+    // Moves an unreadable file to <name>.corrupt, so later appends start a new file instead of adding to it.
+    // Deletes it if it can't be moved.
+    public void moveAside() throws IOException {
+        File corrupt = new File(file.getParentFile(), file.getName() + ".corrupt");
+        try {
+            Files.move(file.toPath(), corrupt.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            Files.deleteIfExists(file.toPath());
+        }
+    }
+
+    // Replaces the file with just these matches, dropping outdated and duplicate records.
+    public void rewrite(Collection<TrackedMatch> matches) throws IOException {
+        File temporary = new File(file.getParentFile(), file.getName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temporary)))) {
+            writeHeader(out);
+            for (TrackedMatch match : matches) {
+                write(out, match);
+            }
+        }
+
+        Files.move(temporary.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private void writeHeader(DataOutputStream out) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+    }
+
+    private void write(DataOutputStream out, TrackedMatch match) throws IOException {
+        out.writeUTF(match.key());
+        out.writeLong(match.time());
+        out.writeByte(match.result().ordinal());
+        out.writeUTF(match.map() == null ? "" : match.map());
+        out.writeInt(match.startSr());
+        out.writeInt(match.endSr());
+    }
+
+    private TrackedMatch read(DataInputStream in) throws IOException {
+        String key = in.readUTF();
+        long time = in.readLong();
+        int result = in.readUnsignedByte();
+        String map = in.readUTF();
+        int startSr = in.readInt();
+        int endSr = in.readInt();
+        return new TrackedMatch(key, time, result < RESULTS.length ? RESULTS[result] : GameResult.UNKNOWN, map, startSr, endSr);
+    }
+}
@@ -0,0 +1,154 @@
+// This file is part of the StreamTextReplacer project.
+// Copyright (C) 2022 Fernando Pettinelli
+
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// at your option any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program.  If not, see <https://www.gnu.org/licenses/>.
+
+
+package com.overwatchtips.overtrackplugin;
+
+import com.overwatchtips.overtrackplugin.records.GamesPage;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.zip.GZIPInputStream;
+
+// Shared HTTP client for the OverTrack API. Connections are kept alive between fetches,
+// responses are gzip-compressed, and the games list is only downloaded again when it changed.
+public class OverTrackClient {
+
+    private static final String GAMES_URL = "https://api2.overtrack.gg/overwatch/games/";
+    private static final Duration CONNECT_TIMEOUT = Duration.ofSeconds(5);
+    // Applies to the response headers and, separately, to reading the body.
+    private static final Duration READ_TIMEOUT = Duration.ofSeconds(10);
+
+    private final HttpClient httpClient = HttpClient.newBuilder()
+            .connectTimeout(CONNECT_TIMEOUT)
+            .followRedirects(HttpClient.Redirect.NORMAL)
+            .build();
+    private final OverTrackDecoder decoder = new OverTrackDecoder();
+
+    private String entityTag;
+    private String lastModified;
+    // Validators of the newest page fetched, only used once commitValidators is called.
+    private String pendingEntityTag;
+    private String pendingLastModified;
+
+    // Fetches the newest page of games played after the cutoff (epoch seconds).
+    // Returns null if it hasn't changed since the last committed fetch.
+    public GamesPage fetchGames(String shareToken, long cutoff) throws IOException {
+        HttpRequest.Builder request = newRequest(GAMES_URL + shareToken);
+        if (entityTag != null) {
+            request.header("If-None-Match", entityTag);
+        }
+
+        if (lastModified != null) {
+            request.header("If-Modified-Since", lastModified);
+        }
+
+        HttpResponse<InputStream> response = send(request);
+        GamesPage data = read(response, cutoff);
+        if (data != null) {
+            pendingEntityTag = response.headers().firstValue("ETag").orElse(null);
+            pendingLastModified = response.headers().firstValue("Last-Modified").orElse(null);
+        }
+
+        return data;
+    }
+
+    // Makes the next fetch conditional on the newest page fetched. Called once everything that page
+    // led to was ingested, as a 304 afterwards would hide whatever was missed.
+    public void commitValidators() {
+        entityTag = pendingEntityTag;
+        lastModified = pendingLastModified;
+    }
+
+    // Fetches the page of older games that follows lastEvaluatedKey.
+    public GamesPage fetchGames(String shareToken, String lastEvaluatedKey, long cutoff) throws IOException {
+        String url = GAMES_URL + shareToken + "?last_evaluated_key=" + URLEncoder.encode(lastEvaluatedKey, StandardCharsets.UTF_8);
+        return read(send(newRequest(url)), cutoff);
+    }
+
+    private HttpRequest.Builder newRequest(String url) {
+        return HttpRequest.newBuilder(URI.create(url))
+                .timeout(READ_TIMEOUT)
+                .header("Accept", "application/json")
+                .header("Accept-Encoding", "gzip");
+    }
+
+    private HttpResponse<InputStream> send(HttpRequest.Builder request) throws IOException {
+        try {
+            return httpClient.send(request.build(), HttpResponse.BodyHandlers.ofInputStream());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while fetching OverTrack games.");
+        }
+    }
+
+    // The request timeout only covers the headers. A server that stalls halfway through the body would
+    // block the lookup forever, so the body is closed once READ_TIMEOUT passes, which ends a blocked read.
+    private GamesPage read(HttpResponse<InputStream> response, long cutoff) throws IOException {
+        AtomicBoolean timedOut = new AtomicBoolean();
+        CompletableFuture<Void> deadline = CompletableFuture.runAsync(() -> {
+            timedOut.set(true);
+            closeQuietly(response.body());
+        }, CompletableFuture.delayedExecutor(READ_TIMEOUT.toMillis(), TimeUnit.MILLISECONDS));
+
+        try (InputStream body = decode(response)) {
+            if (response.statusCode() == 304) {
+                return null;
+            }
+
+            if (response.statusCode() != 200) {
+                throw new IOException("OverTrack returned HTTP " + response.statusCode());
+            }
+
+            return decoder.decode(body, cutoff);
+        } catch (IOException e) {
+            if (timedOut.get()) {
+                throw new HttpTimeoutException("OverTrack didn't send the games within " + READ_TIMEOUT.toSeconds() + " seconds");
+            }
+            throw e;
+        } finally {
+            deadline.cancel(false);
+        }
+    }
+
+    private static void closeQuietly(InputStream body) {
+        try {
+            body.close();
+        } catch (IOException ignored) {
+        }
+    }
+
+    private InputStream decode(HttpResponse<InputStream> response) throws IOException {
+        String encoding = response.headers().firstValue("Content-Encoding").orElse("");
+        if (encoding.equalsIgnoreCase("gzip") && response.statusCode() == 200) {
+            return new GZIPInputStream(response.body());
+        }
+
+        return response.body();
+    }
+}
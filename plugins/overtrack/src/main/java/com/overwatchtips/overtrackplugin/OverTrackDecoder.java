@@ -0,0 +1,132 @@
+// This file is part of the StreamTextReplacer project.
+// Copyright (C) 2022 Fernando Pettinelli
+
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// at your option any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program.  If not, see <https://www.gnu.org/licenses/>.
+
+
+package com.overwatchtips.overtrackplugin;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.overwatchtips.overtrackplugin.enums.GameResult;
+import com.overwatchtips.overtrackplugin.records.GamesPage;
+import com.overwatchtips.overtrackplugin.records.TrackedMatch;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+// Streams the games list and only reads the fields TrackedMatch needs. Everything else,
+// like heroes_played or score, is skipped without being built, and decoding stops at the
+// first match older than the cutoff.
+public class OverTrackDecoder {
+
+    private final JsonFactory jsonFactory = new JsonFactory();
+
+    public GamesPage decode(InputStream in, long cutoff) throws IOException {
+        List<TrackedMatch> games = new ArrayList<>();
+        String lastEvaluatedKey = null;
+
+        try (JsonParser parser = jsonFactory.createParser(in)) {
+            expect(parser.nextToken(), JsonToken.START_OBJECT);
+
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.getCurrentName();
+                JsonToken value = parser.nextToken();
+
+                if (field.equals("games")) {
+                    if (readGames(parser, cutoff, games)) {
+                        return new GamesPage(games, null, true);
+                    }
+                }else if (field.equals("last_evaluated_key") && value == JsonToken.VALUE_STRING) {
+                    lastEvaluatedKey = parser.getText();
+                }else {
+                    parser.skipChildren();
+                }
+            }
+        }
+
+        return new GamesPage(games, lastEvaluatedKey, false);
+    }
+
+    // Returns true if it stopped at a match older than the cutoff.
+    private boolean readGames(JsonParser parser, long cutoff, List<TrackedMatch> games) throws IOException {
+        if (parser.currentToken() == JsonToken.VALUE_NULL) {
+            return false;
+        }
+
+        expect(parser.currentToken(), JsonToken.START_ARRAY);
+
+        while (parser.nextToken() == JsonToken.START_OBJECT) {
+            TrackedMatch match = readMatch(parser);
+            if (match.time() < cutoff) {
+                return true;
+            }
+
+            games.add(match);
+        }
+
+        return false;
+    }
+
+    private TrackedMatch readMatch(JsonParser parser) throws IOException {
+        String key = null;
+        String map = null;
+        long time = 0;
+        int startSr = 0;
+        int endSr = 0;
+        GameResult result = GameResult.UNKNOWN;
+
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.getCurrentName();
+            parser.nextToken();
+
+            switch (field) {
+                case "key" -> key = parser.getValueAsString();
+                case "map" -> map = parser.getValueAsString();
+                case "time" -> time = parser.getValueAsLong();
+                case "start_sr" -> startSr = parser.getValueAsInt();
+                case "end_sr" -> endSr = parser.getValueAsInt();
+                case "result" -> result = parseResult(parser.getValueAsString());
+                default -> parser.skipChildren();
+            }
+        }
+
+        if (key == null) {
+            throw new IOException("OverTrack returned a match without a key.");
+        }
+
+        return new TrackedMatch(key, time, result, map, startSr, endSr);
+    }
+
+    private GameResult parseResult(String result) {
+        if (result == null) {
+            return GameResult.UNKNOWN;
+        }
+
+        try {
+            return GameResult.valueOf(result);
+        } catch (IllegalArgumentException e) {
+            return GameResult.UNKNOWN;
+        }
+    }
+
+    private void expect(JsonToken token, JsonToken expected) throws IOException {
+        if (token != expected) {
+            throw new IOException("Unexpected OverTrack response: expected " + expected + " but got " + token);
+        }
+    }
+}
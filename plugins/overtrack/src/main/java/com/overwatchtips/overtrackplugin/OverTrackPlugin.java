@@ -19,25 +19,35 @@ package com.overwatchtips.overtrackplugin;
 import com.fasterxml.jackson.core.util.DefaultPrettyPrinter;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.ObjectWriter;
-import com.overwatchtips.overtrackplugin.enums.GameResult;
-import com.overwatchtips.overtrackplugin.records.OverTrackData;
-import com.overwatchtips.overtrackplugin.records.OverwatchMatch;
+import com.overwatchtips.overtrackplugin.records.GamesPage;
+import com.overwatchtips.overtrackplugin.records.SessionSummary;
+import com.overwatchtips.overtrackplugin.records.TrackedMatch;
+import com.overwatchtips.streamtextreplacer.api.PlaceholderHandle;
 import com.overwatchtips.streamtextreplacer.api.ReplacerPlugin;
 import org.apache.logging.log4j.Logger;
 
 import java.io.File;
 import java.io.IOException;
-import java.net.URL;
 import java.time.Instant;
-import java.util.Collections;
-import java.util.Iterator;
-import java.util.Set;
-import java.util.TreeSet;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 
 public class OverTrackPlugin extends ReplacerPlugin {
 
+    // Upper bound on pages fetched in one refresh, in case the API keeps returning a last_evaluated_key.
+    private static final int MAX_PAGES = 50;
+
+    private final OverTrackClient overTrackClient = new OverTrackClient();
+    private final MatchIndex matchIndex = new MatchIndex();
+    // Merged matches that couldn't be saved yet, retried with the next save.
+    private final List<TrackedMatch> unsavedMatches = new ArrayList<>();
     private PluginConfig pluginConfig;
-    private TreeSet<OverwatchMatch> cachedData;
+    private MatchStore matchStore;
+    private Map<String, String> placeholderValues;
+    // Whether this refresh's fetch failed, so the other placeholders of the refresh don't try again.
+    private boolean fetchFailed;
 
     public OverTrackPlugin(Logger logger) {
         super(logger);
@@ -83,6 +93,8 @@ public class OverTrackPlugin extends ReplacerPlugin {
             return false;
         }
 
+        this.matchStore = new MatchStore(new File(getDataFolder(), "matches.bin"));
+        loadStoredMatches();
         return true;
     }
 
@@ -104,72 +116,141 @@ public class OverTrackPlugin extends ReplacerPlugin {
     }
 
     @Override
-    public String onRequest(String params, boolean sameCycle) {
-        ObjectMapper mapper = new ObjectMapper();
+    public Map<String, PlaceholderHandle> getPlaceholders() {
+        Map<String, PlaceholderHandle> handles = new HashMap<>();
+        for (String key : SessionSummary.PLACEHOLDERS) {
+            handles.put(key, sameCycle -> resolve(key, sameCycle));
+        }
+        return handles;
+    }
 
-        TreeSet<OverwatchMatch> validMatches = new TreeSet<>(Collections.reverseOrder());
-        OverTrackData data;
-        if (sameCycle) {
-            validMatches = cachedData;
-        }else {
+    private String resolve(String key, boolean sameCycle) {
+        if (!sameCycle) {
+            boolean changed;
             try {
-                data = mapper.readValue(new URL("https://api2.overtrack.gg/overwatch/games/" + pluginConfig.shareToken()), OverTrackData.class);
+                changed = ingestNewMatches();
+                fetchFailed = false;
             } catch (IOException e) {
-                e.printStackTrace();
+                getLogger().warn("Could not fetch OverTrack matches: {}", e.toString());
+                fetchFailed = true;
                 return null;
             }
 
-            Set<OverwatchMatch> matches = data.games();
-            getLogger().info(matches.size() + " matches before removeIf");
-            matches.removeIf(match -> Instant.now().getEpochSecond() - match.time() > pluginConfig.maxLookupPeriod());
-            getLogger().info(matches.size() + " matches after removeIf");
-
-            long previousTimestamp = 0;
-            Iterator<OverwatchMatch> iterator = matches.iterator();
-            while (iterator.hasNext()) {
-                OverwatchMatch match = iterator.next();
-                if (previousTimestamp - match.time() < pluginConfig.timeBetweenSessions()) {
-                    validMatches.add(match);
-                }
+            if (changed || placeholderValues == null) {
+                SessionSummary summary = SessionSummary.of(matchIndex.getMatches());
+                placeholderValues = summary.toPlaceholders();
             }
         }
 
-        cachedData = validMatches;
+        if (fetchFailed || placeholderValues == null) {
+            return null;
+        }
+
+        return placeholderValues.get(key);
+    }
 
-        switch (params.toLowerCase()) {
-            case "rating": {
-                if (validMatches.isEmpty()) {
-                    return "Unknown";
-                }
+    // Pages through the games list, newest first, until it reaches a match that's already indexed
+    // or one older than the lookup period, and merges only what's new. Returns false if the index didn't change.
+    // Nothing is merged until every page was fetched, and the next fetch is only made conditional once
+    // the matches were saved, so a page that fails to download is fetched again next time.
+    private boolean ingestNewMatches() throws IOException {
+        long cutoff = Instant.now().getEpochSecond() - pluginConfig.maxLookupPeriod();
 
-                OverwatchMatch first = validMatches.first();
-                long currentSr = first.endSr() == 0 ? first.startSr() : first.endSr();
-                return String.valueOf(currentSr);
-            }
-            case "wins": {
-                return getResults(validMatches, GameResult.WIN);
-            }
-            case "losses": {
-                return getResults(validMatches, GameResult.LOSS);
+        // null means the newest page hasn't changed since the last fetch, so nothing new was played.
+        GamesPage page = overTrackClient.fetchGames(pluginConfig.shareToken(), cutoff);
+        List<TrackedMatch> fetched = page == null ? List.of() : fetchNewPages(page, cutoff);
+
+        // Only pruned once the fetch succeeded, so a failed refresh leaves the index as it was summarized.
+        boolean pruned = matchIndex.prune(cutoff);
+        if (page == null) {
+            return pruned;
+        }
+
+        List<TrackedMatch> changedMatches = new ArrayList<>();
+        int newMatches = 0;
+        for (TrackedMatch match : fetched) {
+            TrackedMatch previous = matchIndex.get(match.key());
+            if (previous == null) {
+                newMatches++;
             }
-            case "draws": {
-                return getResults(validMatches, GameResult.DRAW);
+
+            if (!match.equals(previous)) {
+                matchIndex.merge(match);
+                changedMatches.add(match);
             }
-            case "last_match": {
-                if (validMatches.isEmpty()) {
-                    return "Unknown";
-                }
+        }
+
+        if (newMatches > 0) {
+            getLogger().debug("Merged {} new OverTrack matches, {} indexed.", newMatches, matchIndex.size());
+        }
+
+        if (saveMatches(changedMatches)) {
+            overTrackClient.commitValidators();
+        }
+
+        return pruned || !changedMatches.isEmpty();
+    }
 
-                OverwatchMatch first = validMatches.first();
-                return first.result().name() + " on " + first.map();
+    // Returns the matches of the page and of the older pages after it, up to the first one already indexed.
+    private List<TrackedMatch> fetchNewPages(GamesPage page, long cutoff) throws IOException {
+        List<TrackedMatch> matches = new ArrayList<>();
+        for (int pages = 1; ; pages++) {
+            boolean caughtUp = page.games().isEmpty() || page.reachedCutoff();
+            for (TrackedMatch match : page.games()) {
+                if (matchIndex.get(match.key()) != null) {
+                    caughtUp = true;
+                }
+                matches.add(match);
             }
-            default: {
-                return null;
+
+            if (caughtUp || page.lastEvaluatedKey() == null || pages >= MAX_PAGES) {
+                return matches;
             }
+
+            page = overTrackClient.fetchGames(pluginConfig.shareToken(), page.lastEvaluatedKey(), cutoff);
         }
     }
 
-    private String getResults(Set<OverwatchMatch> matches, GameResult result) {
-        return String.valueOf(matches.stream().filter(match -> match.result() == result).count());
+    private boolean saveMatches(List<TrackedMatch> matches) {
+        unsavedMatches.addAll(matches);
+        try {
+            matchStore.append(unsavedMatches);
+            unsavedMatches.clear();
+            return true;
+        } catch (IOException e) {
+            getLogger().warn("Could not save OverTrack matches: {}", e.getMessage());
+            return false;
+        }
+    }
+
+    // Loads the matches saved by the last run and publishes their values right away,
+    // so the overlay has data before the first fetch finishes. The file is compacted on the way.
+    // An unreadable file is moved aside, keeping whatever could be read before the bad data.
+    private void loadStoredMatches() {
+        long cutoff = Instant.now().getEpochSecond() - pluginConfig.maxLookupPeriod();
+        try {
+            matchStore.load(matchIndex, cutoff);
+        } catch (IOException e) {
+            getLogger().warn("Could not load saved OverTrack matches, starting a new file: {}", e.getMessage());
+            try {
+                matchStore.moveAside();
+            } catch (IOException moveException) {
+                getLogger().warn("Could not remove the unreadable match file: {}", moveException.getMessage());
+            }
+        }
+
+        try {
+            matchStore.rewrite(matchIndex.getMatches());
+        } catch (IOException e) {
+            getLogger().warn("Could not compact saved OverTrack matches: {}", e.getMessage());
+        }
+
+        if (matchIndex.size() == 0) {
+            return;
+        }
+
+        getLogger().info("Loaded {} saved OverTrack matches.", matchIndex.size());
+        placeholderValues = SessionSummary.of(matchIndex.getMatches()).toPlaceholders();
+        placeholderValues.forEach(getPublisher()::publish);
     }
 }
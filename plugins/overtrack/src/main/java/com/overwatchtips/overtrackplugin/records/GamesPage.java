@@ -14,15 +14,11 @@
 // You should have received a copy of the GNU General Public License
 // along with this program.  If not, see <https://www.gnu.org/licenses/>.
 
-package com.overwatchtips.overtrackplugin.records;
 
-import com.fasterxml.jackson.annotation.JsonProperty;
+package com.overwatchtips.overtrackplugin.records;
 
 import java.util.List;
-import java.util.Set;
-
-public record OverTrackData(Set<OverwatchMatch> games,
-                            @JsonProperty("last_evaluated_key") String lastEvaluatedKey,
-                            List<String> seasons) {
 
-}
+// One page of the OverTrack games list, newest first. If reachedCutoff is set, decoding stopped at
+// the first match older than the lookup period, and there's nothing older worth fetching.
+public record GamesPage(List<TrackedMatch> games, String lastEvaluatedKey, boolean reachedCutoff) {}
@@ -0,0 +1,107 @@
+// This file is part of the StreamTextReplacer project.
+// Copyright (C) 2022 Fernando Pettinelli
+
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// at your option any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program.  If not, see <https://www.gnu.org/licenses/>.
+
+
+package com.overwatchtips.overtrackplugin.records;
+
+import com.overwatchtips.overtrackplugin.enums.GameResult;
+
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Aggregates of the indexed matches, computed once per data update. Every match in the lookup period
+// counts, the same matches the placeholders were always computed from.
+public record SessionSummary(int matches,
+                             Map<GameResult, Integer> results,
+                             int startingSr,
+                             int currentSr,
+                             TrackedMatch lastMatch,
+                             GameResult streakResult,
+                             int streakLength) {
+
+    private static final String UNKNOWN = "Unknown";
+    // Every key toPlaceholders returns.
+    public static final List<String> PLACEHOLDERS = List.of("wins", "losses", "draws", "matches",
+            "rating", "starting_rating", "rating_change", "last_match", "streak");
+
+    public static SessionSummary of(Iterable<TrackedMatch> newestFirst) {
+        Map<GameResult, Integer> results = new EnumMap<>(GameResult.class);
+        for (GameResult result : GameResult.values()) {
+            results.put(result, 0);
+        }
+
+        int matches = 0;
+        TrackedMatch lastMatch = null;
+        TrackedMatch oldestMatch = null;
+        GameResult streakResult = null;
+        int streakLength = 0;
+        boolean streakEnded = false;
+
+        for (TrackedMatch match : newestFirst) {
+            GameResult result = match.result();
+            if (lastMatch == null) {
+                lastMatch = match;
+                streakResult = result;
+            }
+
+            if (!streakEnded && result == streakResult) {
+                streakLength++;
+            }else {
+                streakEnded = true;
+            }
+
+            results.merge(result, 1, Integer::sum);
+            oldestMatch = match;
+            matches++;
+        }
+
+        int startingSr = oldestMatch == null ? 0 : oldestMatch.startSr() == 0 ? oldestMatch.endSr() : oldestMatch.startSr();
+        int currentSr = lastMatch == null ? 0 : lastMatch.endSr() == 0 ? lastMatch.startSr() : lastMatch.endSr();
+        return new SessionSummary(matches, results, startingSr, currentSr, lastMatch, streakResult, streakLength);
+    }
+
+    public int getCount(GameResult result) {
+        return results.get(result);
+    }
+
+    // Every placeholder value this summary can answer, keyed on the lower-case params.
+    public Map<String, String> toPlaceholders() {
+        Map<String, String> placeholders = new HashMap<>();
+        placeholders.put("wins", String.valueOf(getCount(GameResult.WIN)));
+        placeholders.put("losses", String.valueOf(getCount(GameResult.LOSS)));
+        placeholders.put("draws", String.valueOf(getCount(GameResult.DRAW)));
+        placeholders.put("matches", String.valueOf(matches));
+
+        if (lastMatch == null) {
+            placeholders.put("rating", UNKNOWN);
+            placeholders.put("starting_rating", UNKNOWN);
+            placeholders.put("rating_change", UNKNOWN);
+            placeholders.put("last_match", UNKNOWN);
+            placeholders.put("streak", UNKNOWN);
+            return placeholders;
+        }
+
+        int srDelta = currentSr - startingSr;
+        placeholders.put("rating", String.valueOf(currentSr));
+        placeholders.put("starting_rating", String.valueOf(startingSr));
+        placeholders.put("rating_change", srDelta > 0 ? "+" + srDelta : String.valueOf(srDelta));
+        placeholders.put("last_match", streakResult.name() + " on " + lastMatch.map());
+        placeholders.put("streak", streakResult.name().charAt(0) + String.valueOf(streakLength));
+        return placeholders;
+    }
+}
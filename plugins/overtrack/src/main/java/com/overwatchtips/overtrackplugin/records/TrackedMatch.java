@@ -14,21 +14,10 @@
 // You should have received a copy of the GNU General Public License
 // along with this program.  If not, see <https://www.gnu.org/licenses/>.
 
-package com.overwatchtips.streamtextreplacer.threads;
 
-import com.overwatchtips.streamtextreplacer.StreamTextReplacer;
+package com.overwatchtips.overtrackplugin.records;
 
-import java.util.TimerTask;
+import com.overwatchtips.overtrackplugin.enums.GameResult;
 
-public class ConsoleThread extends TimerTask {
-
-    private final StreamTextReplacer main;
-    public ConsoleThread(StreamTextReplacer main) {
-        this.main = main;
-    }
-
-    @Override
-    public void run() {
-        main.getCommandManager().scanConsole();
-    }
-}
+// The fields of a match the session aggregates need. This is what gets indexed and stored on disk.
+public record TrackedMatch(String key, long time, GameResult result, String map, int startSr, int endSr) {}
@@ -14,21 +14,13 @@
 // You should have received a copy of the GNU General Public License
 // along with this program.  If not, see <https://www.gnu.org/licenses/>.
 
-package com.overwatchtips.streamtextreplacer.threads;
+package com.overwatchtips.streamtextreplacer.api;
 
-import com.overwatchtips.streamtextreplacer.StreamTextReplacer;
+// Resolves a single placeholder of a plugin. Handed out by getPlaceholders, so the host can call it
+// directly instead of passing the params to onRequest on every refresh.
+@FunctionalInterface
+public interface PlaceholderHandle {
 
-import java.util.TimerTask;
-
-public class QueryThread extends TimerTask {
-
-    private final StreamTextReplacer main;
-    public QueryThread(StreamTextReplacer main) {
-        this.main = main;
-    }
-
-    @Override
-    public void run() {
-        main.getPluginManager().refreshPlaceholders(false);
-    }
+    // sameCycle has the same meaning as in onRequest. Returns null if the value isn't available.
+    String resolve(boolean sameCycle);
 }
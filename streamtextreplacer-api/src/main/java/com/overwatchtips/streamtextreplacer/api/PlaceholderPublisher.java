@@ -0,0 +1,27 @@
+// This file is part of the StreamTextReplacer project.
+// Copyright (C) 2022 Fernando Pettinelli
+
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// at your option any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program.  If not, see <https://www.gnu.org/licenses/>.
+
+
+package com.overwatchtips.streamtextreplacer.api;
+
+// Lets a plugin push a new value as soon as its data changes, instead of waiting to be polled.
+// Available from getPublisher() once onEnable is called.
+public interface PlaceholderPublisher {
+
+    // Sets the value of the plugin's placeholder with these params, and updates the sources using it right away.
+    // Params are matched like in templates. Throws IllegalArgumentException if the plugin declared placeholders and these aren't one of them.
+    void publish(String params, String value);
+}
@@ -22,11 +22,13 @@ import org.apache.logging.log4j.Logger;
 import java.io.File;
 import java.util.Collections;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 public abstract class ReplacerPlugin {
 
     private File dataFolder;
     private boolean dataFolderSet = false;
+    private PlaceholderPublisher publisher;
 
     private final Logger logger;
     public ReplacerPlugin(Logger logger) {
@@ -54,8 +56,25 @@ public abstract class ReplacerPlugin {
     // how often should its placeholders refresh? (seconds)
     public abstract long getRefreshTime();
 
-    // When a placeholder is requested
-    public abstract String onRequest(String params, boolean sameCycle);
+    // Same as getRefreshTime, in milliseconds, and at least a second as placeholders were never refreshed faster.
+    // Can be overriden by plugins that need sub-second refreshes.
+    public long getRefreshTimeMillis() {
+        return TimeUnit.SECONDS.toMillis(Math.max(1, getRefreshTime()));
+    }
+
+    // Placeholders the plugin supports, keyed by params, e.g. "rating" for %overtrack_rating%. Can be overriden by plugins.
+    // Called once after onEnable. Sources using params that aren't listed are rejected when they're loaded,
+    // and the listed ones are resolved through their handle. If it's empty, any params are passed to onRequest.
+    public Map<String, PlaceholderHandle> getPlaceholders() {
+        return Collections.emptyMap();
+    }
+
+    // When a placeholder is requested. Only used by plugins that don't declare their placeholders.
+    // sameCycle is false for the first request of a refresh and true for the rest, even if the first one
+    // returned null, so a plugin can fetch its data once per refresh.
+    public String onRequest(String params, boolean sameCycle) {
+        return null;
+    }
 
     public File getDataFolder() {
         return dataFolder;
@@ -70,6 +89,18 @@ public abstract class ReplacerPlugin {
         this.dataFolderSet = true;
     }
 
+    public PlaceholderPublisher getPublisher() {
+        return publisher;
+    }
+
+    public void setPublisher(PlaceholderPublisher publisher) {
+        if (this.publisher != null) {
+            throw new UnsupportedOperationException("Cannot set publisher from a plugin.");
+        }
+
+        this.publisher = publisher;
+    }
+
     public Logger getLogger() {
         return logger;
     }
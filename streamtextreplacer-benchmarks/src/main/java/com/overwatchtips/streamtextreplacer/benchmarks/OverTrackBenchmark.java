@@ -0,0 +1,139 @@
+// This file is part of the StreamTextReplacer project.
+// Copyright (C) 2022 Fernando Pettinelli
+
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// at your option any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program.  If not, see <https://www.gnu.org/licenses/>.
+
+
+package com.overwatchtips.streamtextreplacer.benchmarks;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.overwatchtips.overtrackplugin.MatchIndex;
+import com.overwatchtips.overtrackplugin.OverTrackDecoder;
+import com.overwatchtips.overtrackplugin.records.GamesPage;
+import com.overwatchtips.overtrackplugin.records.SessionSummary;
+import com.overwatchtips.overtrackplugin.records.TrackedMatch;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+// Decoding an OverTrack games page and aggregating it into the session placeholders.
+// The payload has the same shape as the API's responses, generated with a fixed seed.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class OverTrackBenchmark {
+
+    private static final String[] MAPS = {"Ilios", "Nepal", "Busan", "King's Row", "Dorado", "Junkertown"};
+    private static final String[] RESULTS = {"WIN", "LOSS", "DRAW"};
+    private static final String[] HEROES = {"ana", "mercy", "reinhardt", "tracer", "genji", "zarya"};
+    private static final long NOW = 1_700_000_000L;
+    private static final long GAME_INTERVAL = 1200;
+
+    @Param({"100", "1000"})
+    private int games;
+
+    private final OverTrackDecoder decoder = new OverTrackDecoder();
+    private final MatchIndex matchIndex = new MatchIndex();
+    private byte[] payload;
+
+    @Setup
+    public void setup() throws IOException {
+        payload = generatePayload(games);
+        for (TrackedMatch match : decoder.decode(new ByteArrayInputStream(payload), 0).games()) {
+            matchIndex.merge(match);
+        }
+    }
+
+    @Benchmark
+    public GamesPage decode() throws IOException {
+        return decoder.decode(new ByteArrayInputStream(payload), 0);
+    }
+
+    // Stops halfway through the page, like a refresh whose lookup period only covers recent games.
+    @Benchmark
+    public GamesPage decodeWithCutoff() throws IOException {
+        return decoder.decode(new ByteArrayInputStream(payload), NOW - games / 2 * GAME_INTERVAL);
+    }
+
+    @Benchmark
+    public Map<String, String> summarize() {
+        return SessionSummary.of(matchIndex.getMatches()).toPlaceholders();
+    }
+
+    private static byte[] generatePayload(int games) throws IOException {
+        Random random = new Random(42);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (JsonGenerator generator = new JsonFactory().createGenerator(out)) {
+            generator.writeStartObject();
+            generator.writeArrayFieldStart("games");
+
+            int sr = 2500;
+            for (int i = 0; i < games; i++) {
+                int startSr = sr;
+                sr += random.nextInt(51) - 25;
+
+                generator.writeStartObject();
+                generator.writeBooleanField("custom_game", false);
+                generator.writeNumberField("duration", 600 + random.nextInt(900));
+                generator.writeNumberField("end_sr", sr);
+                generator.writeStringField("game_type", "competitive");
+                generator.writeStringField("game_version", "1.70.0.0");
+                generator.writeArrayFieldStart("heroes_played");
+                for (int hero = 0; hero < 1 + random.nextInt(3); hero++) {
+                    generator.writeStartArray();
+                    generator.writeString(HEROES[random.nextInt(HEROES.length)]);
+                    generator.writeString(String.valueOf(random.nextDouble()));
+                    generator.writeEndArray();
+                }
+                generator.writeEndArray();
+                generator.writeStringField("key", "player-" + (NOW - i * GAME_INTERVAL) + "-" + i);
+                generator.writeStringField("map", MAPS[random.nextInt(MAPS.length)]);
+                generator.writeStringField("player_name", "Player");
+                generator.writeStringField("rank", "gold");
+                generator.writeStringField("result", RESULTS[random.nextInt(RESULTS.length)]);
+                generator.writeStringField("role", "support");
+                generator.writeArrayFieldStart("score");
+                generator.writeNumber(random.nextInt(4));
+                generator.writeNumber(random.nextInt(4));
+                generator.writeEndArray();
+                generator.writeStringField("season", "season_35");
+                generator.writeNumberField("season_index", 35);
+                generator.writeNumberField("start_sr", startSr);
+                generator.writeNumberField("time", NOW - i * GAME_INTERVAL + random.nextDouble());
+                generator.writeStringField("url", "https://overtrack.gg/overwatch/games/player/" + i);
+                generator.writeNumberField("user_id", 123456789L);
+                generator.writeBooleanField("viewable", true);
+                generator.writeEndObject();
+            }
+
+            generator.writeEndArray();
+            generator.writeStringField("last_evaluated_key", "player-" + (NOW - games * GAME_INTERVAL));
+            generator.writeArrayFieldStart("seasons");
+            generator.writeString("season_35");
+            generator.writeEndArray();
+            generator.writeEndObject();
+        }
+
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,185 @@
+// This file is part of the StreamTextReplacer project.
+// Copyright (C) 2022 Fernando Pettinelli
+
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// at your option any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program.  If not, see <https://www.gnu.org/licenses/>.
+
+
+package com.overwatchtips.streamtextreplacer.benchmarks;
+
+import com.overwatchtips.streamtextreplacer.api.ReplacerPlugin;
+import com.overwatchtips.streamtextreplacer.metrics.Metrics;
+import com.overwatchtips.streamtextreplacer.output.FileSink;
+import com.overwatchtips.streamtextreplacer.output.OutputSink;
+import com.overwatchtips.streamtextreplacer.output.RenderStateCache;
+import com.overwatchtips.streamtextreplacer.plugins.PlaceholderResolver;
+import com.overwatchtips.streamtextreplacer.plugins.SourceIndex;
+import com.overwatchtips.streamtextreplacer.plugins.SourceRenderer;
+import com.overwatchtips.streamtextreplacer.records.CompiledSource;
+import com.overwatchtips.streamtextreplacer.records.FileOutput;
+import com.overwatchtips.streamtextreplacer.records.OBSSettings;
+import com.overwatchtips.streamtextreplacer.records.OBSSource;
+import com.overwatchtips.streamtextreplacer.templates.PlaceholderSchema;
+import com.overwatchtips.streamtextreplacer.templates.PlaceholderSegment;
+import com.overwatchtips.streamtextreplacer.templates.TemplateCompiler;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+
+// The work PluginManager does for a refresh: resolving the placeholders of every plugin,
+// rendering each source through the same SourceRenderer and checking it against what OBS last acknowledged.
+// Nothing is sent, so no OBS instance is needed. renderToFiles does the same through a FileSink
+// writing to a temporary folder, where only the sources that changed are written. renderChanged is a tick
+// where a single placeholder changed, so only the sources showing it are rendered.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RenderBenchmark {
+
+    @Param({"10", "100", "1000", "10000"})
+    private int sources;
+
+    @Param({"4"})
+    private int plugins;
+
+    private final RenderStateCache renderState = new RenderStateCache();
+    private final Map<ReplacerPlugin, Map<String, PlaceholderSegment>> placeholdersByPlugin = new HashMap<>();
+    private final List<String> changedPlaceholders = List.of("%synthetic0_value0%");
+    private List<CompiledSource> compiledSources;
+    private SourceIndex sourceIndex;
+    private PlaceholderResolver placeholderResolver;
+    private SourceRenderer renderer;
+    private SourceRenderer fileRenderer;
+    private Path fileFolder;
+    private FileSink fileSink;
+    private Blackhole blackhole;
+
+    @Setup
+    public void setup() {
+        Map<String, PlaceholderSchema> schemas = new HashMap<>();
+        for (int i = 0; i < plugins; i++) {
+            SyntheticPlugin plugin = new SyntheticPlugin("synthetic" + i);
+            schemas.put(plugin.getIdentifier(), new PlaceholderSchema(plugin));
+        }
+
+        compiledSources = new ArrayList<>(sources);
+        for (int i = 0; i < sources; i++) {
+            String text = "Source " + i + ": %synthetic" + (i % plugins) + "_value" + (i % 25) + "% / %synthetic"
+                    + ((i + 1) % plugins) + "_other% (100% synthetic)";
+            OBSSource source = new OBSSource("source" + i, text);
+            CompiledSource compiledSource = new CompiledSource(OBSSettings.DEFAULT_INSTANCE, source, TemplateCompiler.compile(text)).bind(schemas::get);
+            compiledSources.add(compiledSource);
+
+            for (PlaceholderSegment placeholder : compiledSource.template().getPlaceholders()) {
+                placeholdersByPlugin.computeIfAbsent(placeholder.plugin(), key -> new LinkedHashMap<>()).putIfAbsent(placeholder.key(), placeholder);
+            }
+        }
+
+        sourceIndex = new SourceIndex(compiledSources, schemas::get);
+        placeholderResolver = new PlaceholderResolver(Math.max(16, sources * 2), new Metrics(), placeholder -> {});
+        resolve();
+
+        // Start from the steady state, where OBS already has every source's text.
+        OutputSink acknowledging = new RenderStateSink((sourceName, text) -> renderState.acknowledge(sourceName, text, true));
+        new SourceRenderer(placeholderResolver, name -> acknowledging, List.of(acknowledging)).render(compiledSources, false);
+
+        OutputSink checking = new RenderStateSink((sourceName, text) -> blackhole.consume(renderState.hasChanged(sourceName, text)));
+        renderer = new SourceRenderer(placeholderResolver, name -> checking, List.of(checking));
+
+        try {
+            fileFolder = Files.createTempDirectory("render-benchmark");
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        fileSink = new FileSink(new FileOutput("files", fileFolder.toString(), null));
+        fileSink.start();
+        fileRenderer = new SourceRenderer(placeholderResolver, name -> fileSink, List.of(fileSink));
+        renderToFiles();
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        placeholderResolver.shutdown();
+        fileSink.close();
+
+        try (var files = Files.walk(fileFolder)) {
+            for (Path file : files.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(file);
+            }
+        }
+    }
+
+    @Benchmark
+    public void render(Blackhole blackhole) {
+        this.blackhole = blackhole;
+        renderer.render(compiledSources, false);
+    }
+
+    @Benchmark
+    public void renderChanged(Blackhole blackhole) {
+        this.blackhole = blackhole;
+        renderer.render(sourceIndex.getSourcesUsing(changedPlaceholders), false);
+    }
+
+    @Benchmark
+    public void renderToFiles() {
+        fileRenderer.render(compiledSources, false);
+    }
+
+    @Benchmark
+    public void resolve() {
+        CompletableFuture<?>[] lookups = placeholdersByPlugin.entrySet().stream()
+                .map(entry -> placeholderResolver.resolve(entry.getKey(), entry.getValue().values()))
+                .toArray(CompletableFuture[]::new);
+
+        CompletableFuture.allOf(lookups).join();
+    }
+
+    // Stands in for an OBS output: hands each rendered text to a check instead of sending it.
+    private record RenderStateSink(BiConsumer<String, String> check) implements OutputSink {
+
+        @Override
+        public String getName() {
+            return OBSSettings.DEFAULT_INSTANCE;
+        }
+
+        @Override
+        public void queue(String sourceName, String text, boolean force) {
+            check.accept(sourceName, text);
+        }
+
+        @Override
+        public void flush() {
+        }
+
+        @Override
+        public void start() {
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
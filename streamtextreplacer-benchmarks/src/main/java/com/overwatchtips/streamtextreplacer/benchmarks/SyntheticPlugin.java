@@ -0,0 +1,70 @@
+// This file is part of the StreamTextReplacer project.
+// Copyright (C) 2022 Fernando Pettinelli
+
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// at your option any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program.  If not, see <https://www.gnu.org/licenses/>.
+
+
+package com.overwatchtips.streamtextreplacer.benchmarks;
+
+import com.overwatchtips.streamtextreplacer.api.ReplacerPlugin;
+import org.apache.logging.log4j.LogManager;
+
+// A plugin that answers instantly with a value that changes on every request.
+public class SyntheticPlugin extends ReplacerPlugin {
+
+    private final String identifier;
+    private long requests;
+    public SyntheticPlugin(String identifier) {
+        super(LogManager.getLogger());
+        this.identifier = identifier;
+    }
+
+    @Override
+    public String getName() {
+        return identifier;
+    }
+
+    @Override
+    public String getAuthor() {
+        return "StreamTextReplacer benchmarks";
+    }
+
+    @Override
+    public String getIdentifier() {
+        return identifier;
+    }
+
+    @Override
+    public String getVersion() {
+        return "1.0.0";
+    }
+
+    @Override
+    public boolean onEnable() {
+        return true;
+    }
+
+    @Override
+    public void onDisable() {}
+
+    @Override
+    public long getRefreshTime() {
+        return 1;
+    }
+
+    @Override
+    public String onRequest(String params, boolean sameCycle) {
+        return params + " " + ++requests;
+    }
+}
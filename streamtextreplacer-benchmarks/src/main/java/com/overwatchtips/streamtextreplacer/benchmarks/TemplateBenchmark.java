@@ -0,0 +1,87 @@
+// This file is part of the StreamTextReplacer project.
+// Copyright (C) 2022 Fernando Pettinelli
+
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// at your option any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program.  If not, see <https://www.gnu.org/licenses/>.
+
+
+package com.overwatchtips.streamtextreplacer.benchmarks;
+
+import com.overwatchtips.streamtextreplacer.templates.CompiledTemplate;
+import com.overwatchtips.streamtextreplacer.templates.TemplateCompiler;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// Placeholder extraction: compiling a source text once, against the scan every refresh used to do.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TemplateBenchmark {
+
+    @Param({
+            "Test: %overtrack_rating%",
+            "W %overtrack_wins% - L %overtrack_losses% - D %overtrack_draws% (100% ranked)",
+            "Just some text without any placeholder in it"
+    })
+    private String text;
+
+    @Benchmark
+    public CompiledTemplate compile() {
+        return TemplateCompiler.compile(text);
+    }
+
+    // How placeholders were found before templates were compiled: substringsBetween,
+    // then a split and a join of every token.
+    @Benchmark
+    public void scan(Blackhole blackhole) {
+        for (String placeholder : substringsBetween(text, '%')) {
+            String[] split = placeholder.substring(1, placeholder.length() - 1).split("_");
+            if (split.length <= 1) {
+                continue;
+            }
+
+            blackhole.consume(split[0]);
+            blackhole.consume(String.join("_", Arrays.copyOfRange(split, 1, split.length)));
+        }
+    }
+
+    private static List<String> substringsBetween(String text, char separator) {
+        List<String> list = new ArrayList<>();
+        int position = 0;
+        while (position < text.length()) {
+            int start = text.indexOf(separator, position);
+            if (start < 0) {
+                break;
+            }
+
+            start += 1;
+            int end = text.indexOf(separator, start);
+            if (end < 0) {
+                break;
+            }
+
+            list.add(text.substring(start - 1, end + 1));
+            position = end + 1;
+        }
+
+        return list;
+    }
+}
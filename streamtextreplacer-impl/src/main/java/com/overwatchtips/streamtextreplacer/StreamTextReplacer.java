@@ -16,90 +16,142 @@
 
 package com.overwatchtips.streamtextreplacer;
 
-import com.overwatchtips.streamtextreplacer.api.ReplacerPlugin;
 import com.overwatchtips.streamtextreplacer.commands.CommandManager;
+import com.overwatchtips.streamtextreplacer.commands.ControlSocket;
 import com.overwatchtips.streamtextreplacer.config.OBSConfig;
+import com.overwatchtips.streamtextreplacer.metrics.Metrics;
+import com.overwatchtips.streamtextreplacer.metrics.PrometheusEndpoint;
+import com.overwatchtips.streamtextreplacer.output.FileSink;
+import com.overwatchtips.streamtextreplacer.output.OBSOutput;
+import com.overwatchtips.streamtextreplacer.output.OutputSink;
 import com.overwatchtips.streamtextreplacer.plugins.PluginManager;
 import com.overwatchtips.streamtextreplacer.records.OBSSettings;
-import com.overwatchtips.streamtextreplacer.threads.ConsoleThread;
-import com.overwatchtips.streamtextreplacer.threads.QueryThread;
-import net.twasi.obsremotejava.OBSRemoteController;
+import com.overwatchtips.streamtextreplacer.records.SourceKey;
+import com.overwatchtips.streamtextreplacer.threads.ConsoleReader;
+import com.overwatchtips.streamtextreplacer.threads.FileWatcher;
+import com.overwatchtips.streamtextreplacer.threads.RefreshScheduler;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
+import java.io.File;
 import java.io.IOException;
+import java.nio.file.Paths;
 import java.util.*;
-import java.util.function.Consumer;
 
 public class StreamTextReplacer {
 
     private static final Logger logger = LogManager.getLogger();
 
     private final OBSConfig obsConfig;
+    private final Metrics metrics = new Metrics();
 
-    private OBSRemoteController obsRemoteController;
+    private final Map<String, OutputSink> outputs = new LinkedHashMap<>();
     private PluginManager pluginManager;
     private CommandManager commandManager;
-    private Timer queryTimer;
-    private Timer consoleTimer;
+    private RefreshScheduler refreshScheduler;
+    private ControlSocket controlSocket;
+    private PrometheusEndpoint prometheusEndpoint;
+    private FileWatcher pluginWatcher;
+    private FileWatcher configWatcher;
     public StreamTextReplacer() {
         this.obsConfig = loadConfig();
+        startMetricsEndpoint();
 
-        connectToWebSocket(controller -> {
-            this.obsRemoteController = controller;
-            this.pluginManager = new PluginManager(this);
-            this.commandManager = new CommandManager(this);
+        // Plugins start right away; renders are held back until OBS is connected.
+        OBSSettings obsSettings = obsConfig.getObsSettings();
+        obsSettings.allInstances().forEach(endpoint -> addOutput(new OBSOutput(this, endpoint)));
+        obsSettings.fileOutputs().forEach(fileOutput -> addOutput(new FileSink(fileOutput)));
+        this.commandManager = new CommandManager(this);
+        this.pluginManager = new PluginManager(this);
+
+        this.refreshScheduler = new RefreshScheduler(this);
+        refreshScheduler.start();
+        startWatchers();
+        outputs.values().forEach(OutputSink::start);
+        new ConsoleReader(this).start();
+        startControlSocket();
+    }
 
-            this.queryTimer = new Timer();
-            this.consoleTimer = new Timer();
-            queryTimer.scheduleAtFixedRate(new QueryThread(this), 0, 1000);
-            consoleTimer.scheduleAtFixedRate(new ConsoleThread(this), 0, 1000);
-        });
+    private void addOutput(OutputSink output) {
+        if (outputs.putIfAbsent(output.getName(), output) != null) {
+            logger.warn("There's more than one output named {}, only the first one is used.", output.getName());
+        }
     }
 
-    private void connectToWebSocket(Consumer<OBSRemoteController> callback) {
-        OBSSettings obsSettings = obsConfig.getObsSettings();
-        OBSRemoteController controller = new OBSRemoteController(obsSettings.address(),
-                false,
-                obsSettings.passwordProtected() ? obsSettings.webSocketPassword() : null);
-
-        controller.registerConnectionFailedCallback(message -> {
-            logger.fatal("Error while connecting to WebSocket: {}", message);
-            System.exit(2);
-        });
-
-        controller.registerOnError((message, throwable) -> {
-            logger.fatal("An error has occurred: {}", message);
-            System.exit(2);
-        });
-
-        controller.registerDisconnectCallback(() -> {
-            logger.fatal("WebSocket disconnected.");
-            System.exit(0);
-        });
-
-        if (controller.isFailed()) {
-            logger.fatal("Error while connecting to WebSocket.");
-            System.exit(2);
+    private void startWatchers() {
+        try {
+            pluginWatcher = new FileWatcher("PluginWatcher", pluginManager.getPluginsFolder().toPath(),
+                    name -> name.endsWith(".jar"), jar -> pluginManager.reloadJar(jar.toFile()));
+            pluginWatcher.start();
+        } catch (IOException e) {
+            logger.warn("Could not watch the plugins folder, plugins won't be reloaded when they change: {}", e.getMessage());
+        }
+
+        File configFile = obsConfig.getFile().getAbsoluteFile();
+        try {
+            configWatcher = new FileWatcher("ConfigWatcher", configFile.getParentFile().toPath(),
+                    name -> name.equals(configFile.getName()), file -> reloadConfig());
+            configWatcher.start();
+        } catch (IOException e) {
+            logger.warn("Could not watch obs.json, changes to it need a restart: {}", e.getMessage());
         }
+    }
 
-        controller.registerConnectCallback(response -> {
-            logger.info("Connected to OBS WebSocket successfully. Loading plugins.");
-            callback.accept(controller);
-        });
+    private void reloadConfig() {
+        if (!obsConfig.getFile().isFile()) {
+            return;
+        }
+
+        Set<SourceKey> changedSources = obsConfig.reload();
+        pluginManager.updateSources(changedSources);
     }
 
-    public void shutdown() {
-        for (ReplacerPlugin plugin : pluginManager.getLoadedPlugins()) {
-            StreamTextReplacer.getLogger().info("Disabling {}, version {} by {}", plugin.getName(), plugin.getVersion(), plugin.getAuthor());
-            plugin.onDisable();
+    private void startMetricsEndpoint() {
+        int port = obsConfig.getObsSettings().metricsPort();
+        if (port <= 0) {
+            return;
+        }
+
+        try {
+            prometheusEndpoint = new PrometheusEndpoint(this, port);
+            prometheusEndpoint.start();
+        } catch (IOException e) {
+            logger.error("Could not start the metrics endpoint on port {}: {}", port, e.getMessage());
+        }
+    }
+
+    private void startControlSocket() {
+        String path = obsConfig.getObsSettings().controlSocket();
+        if (path.isEmpty()) {
+            return;
         }
 
-        queryTimer.cancel();
-        queryTimer.purge();
-        consoleTimer.cancel();
-        consoleTimer.purge();
-        obsRemoteController.disconnect();
+        try {
+            controlSocket = new ControlSocket(this, Paths.get(path));
+            controlSocket.start();
+        } catch (IOException | UnsupportedOperationException e) {
+            logger.error("Could not open the control socket {}: {}", path, e.getMessage());
+        }
+    }
+
+    public void shutdown() {
+        if (pluginWatcher != null) {
+            pluginWatcher.close();
+        }
+        if (configWatcher != null) {
+            configWatcher.close();
+        }
+        refreshScheduler.shutdown();
+        pluginManager.unloadPlugins();
+        pluginManager.getPlaceholderResolver().shutdown();
+        if (controlSocket != null) {
+            controlSocket.close();
+        }
+        commandManager.shutdown();
+        if (prometheusEndpoint != null) {
+            prometheusEndpoint.stop();
+        }
+        outputs.values().forEach(OutputSink::close);
         System.exit(0);
     }
 
@@ -119,8 +171,21 @@ public class StreamTextReplacer {
         return commandManager;
     }
 
-    public OBSRemoteController getController() {
-        return obsRemoteController;
+    public Collection<OutputSink> getOutputs() {
+        return outputs.values();
+    }
+
+    // The output with that name, or null if it doesn't exist, e.g. because it was added after startup.
+    public OutputSink getOutput(String name) {
+        return outputs.get(name);
+    }
+
+    public RefreshScheduler getRefreshScheduler() {
+        return refreshScheduler;
+    }
+
+    public Metrics getMetrics() {
+        return metrics;
     }
 
     public OBSConfig getObsConfig() {
@@ -18,49 +18,91 @@ package com.overwatchtips.streamtextreplacer.commands;
 
 import com.overwatchtips.streamtextreplacer.StreamTextReplacer;
 import com.overwatchtips.streamtextreplacer.api.commands.ConsoleCommand;
+import com.overwatchtips.streamtextreplacer.commands.impl.CacheCommand;
 import com.overwatchtips.streamtextreplacer.commands.impl.ForceRefreshCommand;
 import com.overwatchtips.streamtextreplacer.commands.impl.PluginsCommand;
+import com.overwatchtips.streamtextreplacer.commands.impl.StatsCommand;
 import com.overwatchtips.streamtextreplacer.commands.impl.StopCommand;
 
-import java.util.Arrays;
-import java.util.HashMap;
-import java.util.Map;
-import java.util.Scanner;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
 
+// Commands from the console and the control socket are queued and run one at a time on the
+// CommandDispatcher thread, apart from the threads reading them and from the RefreshScheduler.
 public class CommandManager {
 
     private final StreamTextReplacer main;
-    private final Map<String, ConsoleCommand> commandMap = new HashMap<>();
-    private final Scanner scanner = new Scanner(System.in);
+    // Replaced as a whole whenever commands change, so a lookup never sees a half-applied change.
+    private volatile Map<String, ConsoleCommand> commandMap = Collections.emptyMap();
+    private final ExecutorService dispatcher = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "CommandDispatcher");
+        thread.setDaemon(true);
+        return thread;
+    });
     public CommandManager(StreamTextReplacer main) {
         this.main = main;
         loadDefaultCommands();
+        CommandOutputAppender.install();
     }
 
     public boolean isCommandRegistered(String command) {
         return commandMap.containsKey(command);
     }
 
-    public void registerCommand(String commandName, ConsoleCommand command) {
-        commandMap.put(commandName, command);
+    public synchronized void registerCommand(String commandName, ConsoleCommand command) {
+        Map<String, ConsoleCommand> commands = new HashMap<>(commandMap);
+        commands.put(commandName, command);
+        commandMap = Collections.unmodifiableMap(commands);
+    }
+
+    // Unregisters the old commands and registers the new ones in a single step.
+    // New commands whose name is already taken are skipped. Returns the names that were registered.
+    public synchronized Set<String> swapCommands(Collection<String> oldCommands, Map<String, ConsoleCommand> newCommands) {
+        Map<String, ConsoleCommand> commands = new HashMap<>(commandMap);
+        commands.keySet().removeAll(oldCommands);
+
+        Set<String> registered = new HashSet<>();
+        for (Map.Entry<String, ConsoleCommand> entry : newCommands.entrySet()) {
+            if (commands.putIfAbsent(entry.getKey(), entry.getValue()) != null) {
+                StreamTextReplacer.getLogger().warn("{} is already registered as a command!", entry.getKey());
+                continue;
+            }
+
+            registered.add(entry.getKey());
+        }
+
+        commandMap = Collections.unmodifiableMap(commands);
+        return registered;
     }
 
     private void loadDefaultCommands() {
-        commandMap.put("stop", new StopCommand(main));
-        commandMap.put("plugins", new PluginsCommand(main));
-        commandMap.put("forcerefresh", new ForceRefreshCommand(main));
+        Map<String, ConsoleCommand> commands = new HashMap<>();
+        commands.put("stop", new StopCommand(main));
+        commands.put("plugins", new PluginsCommand(main));
+        commands.put("forcerefresh", new ForceRefreshCommand(main));
+        commands.put("cache", new CacheCommand(main));
+        commands.put("stats", new StatsCommand(main));
+        commandMap = Collections.unmodifiableMap(commands);
     }
 
-    public void scanConsole() {
-        if (!scanner.hasNextLine()) {
-            return;
-        }
+    public CompletableFuture<Void> dispatch(String userInput) {
+        return dispatch(userInput, null);
+    }
 
-        String userInput = scanner.nextLine();
-        if (userInput.isEmpty()) {
-            return;
+    // Queues a command line. If output is given, it receives every message the command logs.
+    // The future completes once the command has run.
+    public CompletableFuture<Void> dispatch(String userInput, Consumer<String> output) {
+        if (userInput.isBlank()) {
+            return CompletableFuture.completedFuture(null);
         }
 
+        return CompletableFuture.runAsync(() -> CommandOutputAppender.capture(output, () -> execute(userInput.trim())), dispatcher);
+    }
+
+    private void execute(String userInput) {
         String[] split = userInput.split("[ ]+");
         for (int i = 0; i < split.length; i++) {
             split[i] = split[i].trim();
@@ -70,10 +112,19 @@ public class CommandManager {
         String[] args = Arrays.copyOfRange(split, 1, split.length);
 
         ConsoleCommand consoleCommand = commandMap.get(commandName);
-        if (consoleCommand != null) {
-            consoleCommand.execute(args);
-        }else{
+        if (consoleCommand == null) {
             StreamTextReplacer.getLogger().info("Unknown command.");
+            return;
         }
+
+        try {
+            consoleCommand.execute(args);
+        } catch (RuntimeException e) {
+            StreamTextReplacer.getLogger().error("Command {} failed.", commandName, e);
+        }
+    }
+
+    public void shutdown() {
+        dispatcher.shutdown();
     }
 }
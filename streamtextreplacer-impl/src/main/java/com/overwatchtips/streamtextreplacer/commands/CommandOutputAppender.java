@@ -0,0 +1,70 @@
+// This file is part of the StreamTextReplacer project.
+// Copyright (C) 2022 Fernando Pettinelli
+
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// at your option any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program.  If not, see <https://www.gnu.org/licenses/>.
+
+package com.overwatchtips.streamtextreplacer.commands;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.core.LogEvent;
+import org.apache.logging.log4j.core.LoggerContext;
+import org.apache.logging.log4j.core.appender.AbstractAppender;
+import org.apache.logging.log4j.core.config.Configuration;
+import org.apache.logging.log4j.core.config.Property;
+
+import java.util.function.Consumer;
+
+// Commands report back by logging. While a command runs for a control socket client, this appender
+// also hands the messages logged on that thread to the client.
+class CommandOutputAppender extends AbstractAppender {
+
+    private static final ThreadLocal<Consumer<String>> output = new ThreadLocal<>();
+    private static CommandOutputAppender installed;
+
+    private CommandOutputAppender() {
+        super("CommandOutput", null, null, true, Property.EMPTY_ARRAY);
+    }
+
+    static synchronized void install() {
+        if (installed != null) {
+            return;
+        }
+
+        LoggerContext context = (LoggerContext) LogManager.getContext(false);
+        Configuration configuration = context.getConfiguration();
+        installed = new CommandOutputAppender();
+        installed.start();
+        configuration.addAppender(installed);
+        configuration.getRootLogger().addAppender(installed, null, null);
+        context.updateLoggers();
+    }
+
+    // Runs the task, sending whatever it logs on this thread to the consumer as well.
+    static void capture(Consumer<String> consumer, Runnable task) {
+        output.set(consumer);
+        try {
+            task.run();
+        } finally {
+            output.remove();
+        }
+    }
+
+    @Override
+    public void append(LogEvent event) {
+        Consumer<String> consumer = output.get();
+        if (consumer != null) {
+            consumer.accept(event.getMessage().getFormattedMessage());
+        }
+    }
+}
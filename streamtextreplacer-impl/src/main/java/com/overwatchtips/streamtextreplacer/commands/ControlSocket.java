@@ -0,0 +1,144 @@
+// This file is part of the StreamTextReplacer project.
+// Copyright (C) 2022 Fernando Pettinelli
+
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// at your option any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program.  If not, see <https://www.gnu.org/licenses/>.
+
+package com.overwatchtips.streamtextreplacer.commands;
+
+import com.overwatchtips.streamtextreplacer.StreamTextReplacer;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Writer;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.ArrayList;
+import java.util.List;
+
+// Accepts commands on a Unix domain socket, so scripts can run them without attaching to stdin, e.g.
+//   echo stats | socat - UNIX-CONNECT:streamtextreplacer.sock
+// Each line is a command. The reply is what the command logged, followed by an empty line.
+// The socket file is only accessible to the user running the process, as there's no authentication.
+public class ControlSocket implements Runnable {
+
+    private final StreamTextReplacer main;
+    private final Path path;
+    private final ServerSocketChannel server;
+    private final Thread thread;
+    public ControlSocket(StreamTextReplacer main, Path path) throws IOException {
+        this.main = main;
+        this.path = path.toAbsolutePath();
+
+        // A socket file left behind by a process that didn't shut down cleanly would make bind fail.
+        if (Files.exists(this.path) && !Files.isRegularFile(this.path) && !Files.isDirectory(this.path)) {
+            Files.delete(this.path);
+        }
+
+        this.server = ServerSocketChannel.open(StandardProtocolFamily.UNIX);
+        try {
+            bind();
+        } catch (IOException | RuntimeException e) {
+            server.close();
+            throw e;
+        }
+
+        this.thread = new Thread(this, "ControlSocket");
+        this.thread.setDaemon(true);
+    }
+
+    // Binds in an owner-only directory next to the path and restricts the socket file before moving it into place,
+    // so there's no moment where another user could connect to it.
+    private void bind() throws IOException {
+        Path directory;
+        try {
+            directory = Files.createTempDirectory(path.getParent(), ".control",
+                    PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rwx------")));
+        } catch (UnsupportedOperationException e) {
+            // No POSIX permissions, e.g. on Windows, where the socket gets the permissions of its folder.
+            server.bind(UnixDomainSocketAddress.of(path));
+            return;
+        }
+
+        Path temporary = directory.resolve("socket");
+        try {
+            server.bind(UnixDomainSocketAddress.of(temporary));
+            Files.setPosixFilePermissions(temporary, PosixFilePermissions.fromString("rw-------"));
+            Files.move(temporary, path, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temporary);
+            Files.deleteIfExists(directory);
+        }
+    }
+
+    public void start() {
+        thread.start();
+        StreamTextReplacer.getLogger().info("Accepting commands on {}", path);
+    }
+
+    @Override
+    public void run() {
+        while (server.isOpen()) {
+            try {
+                SocketChannel client = server.accept();
+                Thread clientThread = new Thread(() -> serve(client), "ControlSocket-client");
+                clientThread.setDaemon(true);
+                clientThread.start();
+            } catch (ClosedChannelException e) {
+                return;
+            } catch (IOException e) {
+                StreamTextReplacer.getLogger().warn("Could not accept a control socket connection: {}", e.getMessage());
+            }
+        }
+    }
+
+    private void serve(SocketChannel client) {
+        try (client) {
+            BufferedReader reader = new BufferedReader(Channels.newReader(client, StandardCharsets.UTF_8));
+            Writer writer = Channels.newWriter(client, StandardCharsets.UTF_8);
+
+            String line;
+            while ((line = reader.readLine()) != null) {
+                List<String> output = new ArrayList<>();
+                main.getCommandManager().dispatch(line, output::add).join();
+
+                for (String outputLine : output) {
+                    writer.write(outputLine);
+                    writer.write('\n');
+                }
+                writer.write('\n');
+                writer.flush();
+            }
+        } catch (IOException e) {
+            StreamTextReplacer.getLogger().debug("Control socket client disconnected: {}", e.getMessage());
+        }
+    }
+
+    public void close() {
+        try {
+            server.close();
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            StreamTextReplacer.getLogger().warn("Could not close the control socket: {}", e.getMessage());
+        }
+    }
+}
@@ -29,6 +29,6 @@ public class ForceRefreshCommand implements ConsoleCommand {
     @Override
     public void execute(String[] args) {
         StreamTextReplacer.getLogger().info("Forcing a placeholder refresh.");
-        main.getPluginManager().refreshPlaceholders(true);
+        main.getRefreshScheduler().refreshAll();
     }
 }
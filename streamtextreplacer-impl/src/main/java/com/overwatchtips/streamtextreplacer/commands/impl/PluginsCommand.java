@@ -19,6 +19,8 @@ package com.overwatchtips.streamtextreplacer.commands.impl;
 import com.overwatchtips.streamtextreplacer.StreamTextReplacer;
 import com.overwatchtips.streamtextreplacer.api.ReplacerPlugin;
 import com.overwatchtips.streamtextreplacer.api.commands.ConsoleCommand;
+import com.overwatchtips.streamtextreplacer.plugins.CircuitBreaker;
+import com.overwatchtips.streamtextreplacer.plugins.PlaceholderResolver;
 
 import java.util.Collection;
 import java.util.stream.Collectors;
@@ -33,6 +35,17 @@ public class PluginsCommand implements ConsoleCommand {
     @Override
     public void execute(String[] args) {
         Collection<ReplacerPlugin> plugins = main.getPluginManager().getLoadedPlugins();
-        StreamTextReplacer.getLogger().info("Plugins ({}): {}", plugins.size(), plugins.stream().map(ReplacerPlugin::getName).collect(Collectors.joining(", ")));
+        PlaceholderResolver resolver = main.getPluginManager().getPlaceholderResolver();
+        StreamTextReplacer.getLogger().info("Plugins ({}): {}", plugins.size(), plugins.stream()
+                .map(plugin -> plugin.getName() + " (" + describe(resolver.getBreaker(plugin)) + ")")
+                .collect(Collectors.joining(", ")));
+    }
+
+    private static String describe(CircuitBreaker breaker) {
+        return switch (breaker.getState()) {
+            case CLOSED -> "ok";
+            case OPEN -> "failing, retrying in " + (breaker.getRetryDelayMillis() + 999) / 1000 + "s";
+            case HALF_OPEN -> "failing, retrying now";
+        };
     }
 }
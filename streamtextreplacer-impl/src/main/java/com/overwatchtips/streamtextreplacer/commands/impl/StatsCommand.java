@@ -0,0 +1,54 @@
+// This file is part of the StreamTextReplacer project.
+// Copyright (C) 2022 Fernando Pettinelli
+
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// at your option any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program.  If not, see <https://www.gnu.org/licenses/>.
+
+
+package com.overwatchtips.streamtextreplacer.commands.impl;
+
+import com.overwatchtips.streamtextreplacer.StreamTextReplacer;
+import com.overwatchtips.streamtextreplacer.api.commands.ConsoleCommand;
+import com.overwatchtips.streamtextreplacer.metrics.Metrics;
+import com.overwatchtips.streamtextreplacer.metrics.PluginMetrics;
+import com.overwatchtips.streamtextreplacer.plugins.PlaceholderCache;
+import org.apache.logging.log4j.Logger;
+
+import java.util.Map;
+
+public class StatsCommand implements ConsoleCommand {
+
+    private final StreamTextReplacer main;
+    public StatsCommand(StreamTextReplacer main) {
+        this.main = main;
+    }
+
+    @Override
+    public void execute(String[] args) {
+        Logger logger = StreamTextReplacer.getLogger();
+        Metrics metrics = main.getMetrics();
+
+        logger.info("Ticks: {}", metrics.getTickDuration().summary());
+        for (Map.Entry<String, PluginMetrics> entry : metrics.getPluginMetrics().entrySet()) {
+            PluginMetrics pluginMetrics = entry.getValue();
+            logger.info("Plugin {}: {} errors, {} unresolved, {} coalesced, {}", entry.getKey(), pluginMetrics.getErrors(),
+                    pluginMetrics.getUnresolved(), pluginMetrics.getCoalesced(), pluginMetrics.getRequestDuration().summary());
+        }
+        logger.info("OBS: {} failed, {}", metrics.getObsFailures(), metrics.getObsRoundTrip().summary());
+
+        PlaceholderCache cache = main.getPluginManager().getPlaceholderResolver().getCache();
+        long lookups = cache.getHits() + cache.getStaleHits() + cache.getMisses();
+        logger.info("Placeholder cache hit ratio: {}", lookups == 0 ? "n/a"
+                : String.format("%.1f%% (%.1f%% stale)", 100.0 * (cache.getHits() + cache.getStaleHits()) / lookups, 100.0 * cache.getStaleHits() / lookups));
+    }
+}
@@ -19,12 +19,14 @@ package com.overwatchtips.streamtextreplacer.config;
 import com.fasterxml.jackson.core.util.DefaultPrettyPrinter;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.ObjectWriter;
-import com.overwatchtips.streamtextreplacer.records.OBSSettings;
-import com.overwatchtips.streamtextreplacer.records.OBSSource;
+import com.overwatchtips.streamtextreplacer.records.*;
+import com.overwatchtips.streamtextreplacer.templates.TemplateCompiler;
 import org.apache.logging.log4j.Logger;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.*;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
@@ -32,7 +34,8 @@ public class OBSConfig {
 
     private final Logger logger;
     private final File file;
-    private final OBSSettings obsSettings;
+    private volatile OBSSettings obsSettings;
+    private volatile List<CompiledSource> compiledSources;
 
     public OBSConfig(Logger logger) throws IOException {
         this.logger = logger;
@@ -42,8 +45,93 @@ public class OBSConfig {
             createFile();
         }
 
+        obsSettings = readFile();
+        compiledSources = compile(obsSettings, Collections.emptyList());
+    }
+
+    // Reads the file again, recompiling only the sources that were added or changed.
+    // Returns the keys of those sources. If the file can't be read, the current settings are kept.
+    public Set<SourceKey> reload() {
+        OBSSettings newSettings;
+        try {
+            newSettings = readFile();
+        } catch (IOException e) {
+            logger.error("Error while reloading obs.json, keeping the current settings: {}", e.getMessage());
+            return Collections.emptySet();
+        }
+
+        OBSSettings oldSettings = obsSettings;
+        if (!outputsOf(newSettings).equals(outputsOf(oldSettings))
+                || newSettings.placeholderCacheSize() != oldSettings.placeholderCacheSize()
+                || newSettings.metricsPort() != oldSettings.metricsPort()
+                || !newSettings.controlSocket().equals(oldSettings.controlSocket())) {
+            logger.warn("Changes to the outputs, cache size, metrics port or control socket in obs.json only apply after a restart.");
+        }
+
+        Map<SourceKey, OBSSource> oldSources = sourcesOf(oldSettings);
+        Map<SourceKey, OBSSource> newSources = sourcesOf(newSettings);
+        Set<SourceKey> changed = newSources.entrySet().stream()
+                .filter(entry -> !entry.getValue().equals(oldSources.get(entry.getKey())))
+                .map(Map.Entry::getKey)
+                .collect(Collectors.toSet());
+        long removed = oldSources.keySet().stream()
+                .filter(key -> !newSources.containsKey(key))
+                .count();
+
+        List<CompiledSource> newCompiledSources = compile(newSettings, compiledSources);
+        obsSettings = newSettings;
+        compiledSources = newCompiledSources;
+        logger.info("Reloaded obs.json: {} source(s) added or changed, {} removed.", changed.size(), removed);
+        return changed;
+    }
+
+    private OBSSettings readFile() throws IOException {
         ObjectMapper mapper = new ObjectMapper();
-        obsSettings = mapper.readValue(file, OBSSettings.class);
+        return mapper.readValue(file, OBSSettings.class);
+    }
+
+    // Compiled sources whose text didn't change are reused.
+    private static List<CompiledSource> compile(OBSSettings obsSettings, List<CompiledSource> previous) {
+        Map<SourceKey, CompiledSource> reusable = previous.stream()
+                .collect(Collectors.toMap(CompiledSource::key, Function.identity(), (first, second) -> first));
+
+        List<CompiledSource> compiled = new ArrayList<>();
+        sourcesOf(obsSettings).forEach((key, source) -> {
+            CompiledSource compiledSource = reusable.get(key);
+            if (compiledSource == null || !compiledSource.source().equals(source)) {
+                compiledSource = new CompiledSource(key.output(), source, TemplateCompiler.compile(source.text()));
+            }
+            compiled.add(compiledSource);
+        });
+
+        return Collections.unmodifiableList(compiled);
+    }
+
+    private static Map<SourceKey, OBSSource> sourcesOf(OBSSettings obsSettings) {
+        Map<SourceKey, OBSSource> sources = new LinkedHashMap<>();
+        for (OBSEndpoint instance : obsSettings.allInstances()) {
+            for (OBSSource source : instance.customSources()) {
+                sources.putIfAbsent(new SourceKey(instance.name(), source.sourceName()), source);
+            }
+        }
+
+        for (FileOutput fileOutput : obsSettings.fileOutputs()) {
+            for (OBSSource source : fileOutput.customSources()) {
+                sources.putIfAbsent(new SourceKey(fileOutput.name(), source.sourceName()), source);
+            }
+        }
+
+        return sources;
+    }
+
+    // The outputs without their sources, which can change without a restart.
+    private static List<Record> outputsOf(OBSSettings obsSettings) {
+        return Stream.concat(
+                obsSettings.allInstances().stream()
+                        .map(instance -> new OBSEndpoint(instance.name(), instance.address(), instance.webSocketPassword(), instance.passwordProtected(), null)),
+                obsSettings.fileOutputs().stream()
+                        .map(fileOutput -> new FileOutput(fileOutput.name(), fileOutput.folder(), null)))
+                .toList();
     }
 
     private void writeToFile(OBSSettings obsSettings) throws IOException {
@@ -57,7 +145,9 @@ public class OBSConfig {
 
         OBSSource customSourceDefault = new OBSSource("test", "Test: %overtrack_rating%");
         OBSSettings obsSettingsDefault = new OBSSettings("ws://localhost:4444","password", false,
-                Stream.of(customSourceDefault).collect(Collectors.toSet()));
+                Stream.of(customSourceDefault).collect(Collectors.toSet()),
+                OBSSettings.DEFAULT_PLUGIN_DEADLINE, Collections.emptyMap(), OBSSettings.DEFAULT_PLACEHOLDER_CACHE_SIZE, 0, "",
+                Collections.emptyList(), Collections.emptyList());
 
         writeToFile(obsSettingsDefault);
     }
@@ -65,4 +155,13 @@ public class OBSConfig {
     public OBSSettings getObsSettings() {
         return obsSettings;
     }
+
+    public File getFile() {
+        return file;
+    }
+
+    // Source texts parsed when the file is loaded. Placeholders aren't bound to plugins yet.
+    public List<CompiledSource> getCompiledSources() {
+        return compiledSources;
+    }
 }
@@ -0,0 +1,71 @@
+// This file is part of the StreamTextReplacer project.
+// Copyright (C) 2022 Fernando Pettinelli
+
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// at your option any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program.  If not, see <https://www.gnu.org/licenses/>.
+
+
+package com.overwatchtips.streamtextreplacer.metrics;
+
+import com.overwatchtips.streamtextreplacer.api.ReplacerPlugin;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+// Runtime statistics, exposed through the stats command and the optional Prometheus endpoint.
+// A tick is one refresh of a plugin, from the lookup until its sources are queued for OBS.
+public class Metrics {
+
+    private final LatencyHistogram tickDuration = new LatencyHistogram();
+    private final LatencyHistogram obsRoundTrip = new LatencyHistogram();
+    private final LongAdder obsFailures = new LongAdder();
+    private final Map<String, PluginMetrics> pluginMetrics = new ConcurrentHashMap<>();
+
+    public void recordTick(long nanos) {
+        tickDuration.record(nanos);
+    }
+
+    public void recordObsResponse(long nanos, boolean successful) {
+        obsRoundTrip.record(nanos);
+        if (!successful) {
+            obsFailures.increment();
+        }
+    }
+
+    public PluginMetrics getPluginMetrics(ReplacerPlugin plugin) {
+        return pluginMetrics.computeIfAbsent(plugin.getIdentifier(), identifier -> new PluginMetrics());
+    }
+
+    // Keyed on the plugin identifier.
+    public Map<String, PluginMetrics> getPluginMetrics() {
+        return Collections.unmodifiableMap(pluginMetrics);
+    }
+
+    public LatencyHistogram getTickDuration() {
+        return tickDuration;
+    }
+
+    public LatencyHistogram getObsRoundTrip() {
+        return obsRoundTrip;
+    }
+
+    public long getObsRequests() {
+        return obsRoundTrip.getCount();
+    }
+
+    public long getObsFailures() {
+        return obsFailures.sum();
+    }
+}
@@ -0,0 +1,67 @@
+// This file is part of the StreamTextReplacer project.
+// Copyright (C) 2022 Fernando Pettinelli
+
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// at your option any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program.  If not, see <https://www.gnu.org/licenses/>.
+
+
+package com.overwatchtips.streamtextreplacer.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+// onRequest statistics of a single plugin.
+// Errors are requests that threw, unresolved ones returned null. Coalesced requests were never made,
+// as the same placeholder was already being requested.
+public class PluginMetrics {
+
+    private final LatencyHistogram requestDuration = new LatencyHistogram();
+    private final LongAdder errors = new LongAdder();
+    private final LongAdder unresolved = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+
+    public void recordRequest(long nanos, boolean resolved) {
+        requestDuration.record(nanos);
+        if (!resolved) {
+            unresolved.increment();
+        }
+    }
+
+    public void recordError(long nanos) {
+        requestDuration.record(nanos);
+        errors.increment();
+    }
+
+    public void recordCoalesced() {
+        coalesced.increment();
+    }
+
+    public LatencyHistogram getRequestDuration() {
+        return requestDuration;
+    }
+
+    public long getRequests() {
+        return requestDuration.getCount();
+    }
+
+    public long getErrors() {
+        return errors.sum();
+    }
+
+    public long getUnresolved() {
+        return unresolved.sum();
+    }
+
+    public long getCoalesced() {
+        return coalesced.sum();
+    }
+}
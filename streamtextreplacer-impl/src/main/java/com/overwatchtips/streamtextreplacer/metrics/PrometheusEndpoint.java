@@ -0,0 +1,145 @@
+// This file is part of the StreamTextReplacer project.
+// Copyright (C) 2022 Fernando Pettinelli
+
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// at your option any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program.  If not, see <https://www.gnu.org/licenses/>.
+
+
+package com.overwatchtips.streamtextreplacer.metrics;
+
+import com.overwatchtips.streamtextreplacer.StreamTextReplacer;
+import com.overwatchtips.streamtextreplacer.plugins.PlaceholderCache;
+import com.overwatchtips.streamtextreplacer.plugins.PluginManager;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+// Serves the metrics in the Prometheus text format on http://127.0.0.1:<port>/metrics.
+// Only bound to the loopback address, as there's no authentication.
+public class PrometheusEndpoint {
+
+    private static final String PREFIX = "streamtextreplacer_";
+    private static final double[] QUANTILES = {0.5, 0.9, 0.99};
+
+    private final StreamTextReplacer main;
+    private final HttpServer server;
+    public PrometheusEndpoint(StreamTextReplacer main, int port) throws IOException {
+        this.main = main;
+        this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        this.server.createContext("/metrics", this::handle);
+    }
+
+    public void start() {
+        server.start();
+        StreamTextReplacer.getLogger().info("Serving metrics on http://{}:{}/metrics",
+                server.getAddress().getHostString(), server.getAddress().getPort());
+    }
+
+    public void stop() {
+        server.stop(0);
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            if (!"GET".equals(exchange.getRequestMethod())) {
+                exchange.sendResponseHeaders(405, -1);
+                return;
+            }
+
+            byte[] body = scrape().getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4; charset=utf-8");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        }
+    }
+
+    private String scrape() {
+        Metrics metrics = main.getMetrics();
+        StringBuilder builder = new StringBuilder();
+
+        writeSummary(builder, "tick_duration_seconds", "Time taken by a plugin refresh, from lookup to render.",
+                metrics.getTickDuration());
+
+        Map<String, PluginMetrics> pluginMetrics = metrics.getPluginMetrics();
+        writeHeader(builder, "plugin_request_duration_seconds", "summary", "Time taken by onRequest.");
+        pluginMetrics.forEach((identifier, metric) -> writeSummaryValues(builder, "plugin_request_duration_seconds",
+                label("plugin", identifier), metric.getRequestDuration()));
+        writeHeader(builder, "plugin_errors_total", "counter", "onRequest calls that threw.");
+        pluginMetrics.forEach((identifier, metric) -> writeValue(builder, "plugin_errors_total", label("plugin", identifier), metric.getErrors()));
+        writeHeader(builder, "plugin_unresolved_total", "counter", "onRequest calls that returned null.");
+        pluginMetrics.forEach((identifier, metric) -> writeValue(builder, "plugin_unresolved_total", label("plugin", identifier), metric.getUnresolved()));
+        writeHeader(builder, "plugin_coalesced_total", "counter", "Requests that shared one already in flight.");
+        pluginMetrics.forEach((identifier, metric) -> writeValue(builder, "plugin_coalesced_total", label("plugin", identifier), metric.getCoalesced()));
+
+        writeSummary(builder, "obs_request_duration_seconds", "Round trip of a SetSourceSettings request.",
+                metrics.getObsRoundTrip());
+        writeHeader(builder, "obs_failures_total", "counter", "SetSourceSettings requests OBS rejected.");
+        writeValue(builder, "obs_failures_total", "", metrics.getObsFailures());
+
+        PluginManager pluginManager = main.getPluginManager();
+        if (pluginManager != null) {
+            PlaceholderCache cache = pluginManager.getPlaceholderResolver().getCache();
+            writeHeader(builder, "placeholder_cache_entries", "gauge", "Placeholders currently cached.");
+            writeValue(builder, "placeholder_cache_entries", "", cache.size());
+            writeHeader(builder, "placeholder_cache_requests_total", "counter", "Placeholder cache lookups by result.");
+            writeValue(builder, "placeholder_cache_requests_total", label("result", "hit"), cache.getHits());
+            writeValue(builder, "placeholder_cache_requests_total", label("result", "stale"), cache.getStaleHits());
+            writeValue(builder, "placeholder_cache_requests_total", label("result", "miss"), cache.getMisses());
+            writeHeader(builder, "placeholder_cache_evictions_total", "counter", "Placeholders evicted from the cache.");
+            writeValue(builder, "placeholder_cache_evictions_total", "", cache.getEvictions());
+        }
+
+        return builder.toString();
+    }
+
+    private static void writeSummary(StringBuilder builder, String name, String help, LatencyHistogram histogram) {
+        writeHeader(builder, name, "summary", help);
+        writeSummaryValues(builder, name, "", histogram);
+    }
+
+    private static void writeSummaryValues(StringBuilder builder, String name, String labels, LatencyHistogram histogram) {
+        for (double quantile : QUANTILES) {
+            String quantileLabel = label("quantile", String.valueOf(quantile));
+            writeValue(builder, name, labels.isEmpty() ? quantileLabel : labels + "," + quantileLabel,
+                    histogram.getPercentile(quantile * 100) / 1_000_000.0);
+        }
+        writeValue(builder, name + "_sum", labels, histogram.getSum() / 1_000_000.0);
+        writeValue(builder, name + "_count", labels, histogram.getCount());
+    }
+
+    private static void writeHeader(StringBuilder builder, String name, String type, String help) {
+        builder.append("# HELP ").append(PREFIX).append(name).append(' ').append(help).append('\n');
+        builder.append("# TYPE ").append(PREFIX).append(name).append(' ').append(type).append('\n');
+    }
+
+    private static void writeValue(StringBuilder builder, String name, String labels, Number value) {
+        builder.append(PREFIX).append(name);
+        if (!labels.isEmpty()) {
+            builder.append('{').append(labels).append('}');
+        }
+        builder.append(' ').append(value).append('\n');
+    }
+
+    private static String label(String name, String value) {
+        String escaped = value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+        return name + "=\"" + escaped + "\"";
+    }
+}
@@ -0,0 +1,171 @@
+// This file is part of the StreamTextReplacer project.
+// Copyright (C) 2022 Fernando Pettinelli
+
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// at your option any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program.  If not, see <https://www.gnu.org/licenses/>.
+
+
+package com.overwatchtips.streamtextreplacer.output;
+
+import com.overwatchtips.streamtextreplacer.StreamTextReplacer;
+import com.overwatchtips.streamtextreplacer.records.FileOutput;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+// Writes each source to <folder>/<source name>.txt. A file is written to a temporary file next to it and
+// moved over the old one, so OBS never reads a half-written file. Text that didn't change isn't written,
+// and writes happen on the sink's own thread so a slow disk doesn't hold up rendering.
+// A failed write is retried until it succeeds, as the source may not be rendered again for a while.
+public class FileSink implements OutputSink {
+
+    private static final long RETRY_DELAY_MILLIS = 1000;
+
+    private final String name;
+    private final Path folder;
+    // Only touched on the RefreshScheduler thread.
+    private final Map<String, String> batch = new LinkedHashMap<>();
+    // Last text queued per source.
+    private final Map<String, String> written = new ConcurrentHashMap<>();
+    // Text whose write failed, per source. Only touched on the writer thread, like retryScheduled.
+    private final Map<String, String> failed = new HashMap<>();
+    private boolean retryScheduled;
+    private final ScheduledThreadPoolExecutor writer;
+    public FileSink(FileOutput fileOutput) {
+        this.name = fileOutput.name();
+        this.folder = Paths.get(fileOutput.folder());
+        this.writer = new ScheduledThreadPoolExecutor(1, runnable -> {
+            Thread thread = new Thread(runnable, "FileSink-" + name);
+            thread.setDaemon(true);
+            return thread;
+        });
+        writer.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+        // Static sources are rendered before the outputs start, so the folder is created as the first write.
+        writer.execute(this::createFolder);
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public void queue(String sourceName, String text, boolean force) {
+        if (force || !text.equals(written.get(sourceName))) {
+            batch.put(sourceName, text);
+        }else{
+            batch.remove(sourceName);
+        }
+    }
+
+    @Override
+    public void flush() {
+        if (batch.isEmpty()) {
+            return;
+        }
+
+        Map<String, String> toWrite = new LinkedHashMap<>(batch);
+        batch.clear();
+        written.putAll(toWrite);
+        writer.execute(() -> toWrite.forEach(this::write));
+    }
+
+    private void write(String sourceName, String text) {
+        Path target = folder.resolve(fileNameOf(sourceName));
+        Path temp = null;
+        try {
+            temp = Files.createTempFile(folder, ".", ".tmp");
+            Files.writeString(temp, text, StandardCharsets.UTF_8);
+            try {
+                Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+            }
+            failed.remove(sourceName);
+        } catch (IOException e) {
+            // Only the first failure is logged, not every retry.
+            if (failed.put(sourceName, text) == null) {
+                StreamTextReplacer.getLogger().warn("Failed to write source {} to {}, retrying: {}", sourceName, target, e.getMessage());
+            }
+            deleteQuietly(temp);
+            scheduleRetry();
+        }
+    }
+
+    private void scheduleRetry() {
+        if (retryScheduled) {
+            return;
+        }
+
+        retryScheduled = true;
+        writer.schedule(this::retryFailed, RETRY_DELAY_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    // Writes the latest failed text of each source again.
+    private void retryFailed() {
+        retryScheduled = false;
+        try {
+            // The folder may have been removed or never created. If that fails, the writes below fail and retry too.
+            Files.createDirectories(folder);
+        } catch (IOException ignored) {
+        }
+
+        new LinkedHashMap<>(failed).forEach(this::write);
+    }
+
+    // Source names can contain characters that aren't allowed in file names.
+    private static String fileNameOf(String sourceName) {
+        return sourceName.replaceAll("[^A-Za-z0-9 ._-]", "_") + ".txt";
+    }
+
+    private static void deleteQuietly(Path path) {
+        if (path == null) {
+            return;
+        }
+
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException ignored) {
+        }
+    }
+
+    private void createFolder() {
+        try {
+            Files.createDirectories(folder);
+        } catch (IOException e) {
+            StreamTextReplacer.getLogger().error("Could not create the output folder {}: {}", folder, e.getMessage());
+        }
+    }
+
+    @Override
+    public void start() {
+        // Nothing to connect to; writes go through as soon as they're flushed.
+    }
+
+    @Override
+    public void close() {
+        writer.shutdown();
+        try {
+            writer.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,153 @@
+// This file is part of the StreamTextReplacer project.
+// Copyright (C) 2022 Fernando Pettinelli
+
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// at your option any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program.  If not, see <https://www.gnu.org/licenses/>.
+
+
+package com.overwatchtips.streamtextreplacer.output;
+
+import com.overwatchtips.streamtextreplacer.StreamTextReplacer;
+import com.overwatchtips.streamtextreplacer.records.OBSEndpoint;
+import net.twasi.obsremotejava.OBSRemoteController;
+
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+// Keeps the OBS WebSocket connection up. When it fails or drops, a new connection is attempted
+// with exponential backoff instead of exiting, so plugins and caches keep running while OBS is gone.
+// Each attempt uses a new controller, and callbacks from older ones are ignored.
+public class OBSConnection {
+
+    private static final long INITIAL_BACKOFF_MILLIS = 500;
+    private static final long MAX_BACKOFF_MILLIS = 30000;
+
+    private final OBSEndpoint endpoint;
+    private final Runnable onConnected;
+    private final Runnable onDisconnected;
+    private final ScheduledThreadPoolExecutor executor;
+
+    // Only touched on the executor thread.
+    private int attempt;
+    private long backoff = INITIAL_BACKOFF_MILLIS;
+    private boolean everConnected;
+    private boolean closed;
+
+    private volatile OBSRemoteController controller;
+    private volatile boolean connected;
+    public OBSConnection(OBSEndpoint endpoint, Runnable onConnected, Runnable onDisconnected) {
+        this.endpoint = endpoint;
+        this.onConnected = onConnected;
+        this.onDisconnected = onDisconnected;
+        this.executor = new ScheduledThreadPoolExecutor(1, runnable -> {
+            Thread thread = new Thread(runnable, "OBSConnection-" + endpoint.name());
+            thread.setDaemon(true);
+            return thread;
+        });
+        // A pending reconnect shouldn't hold up closing.
+        this.executor.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+    }
+
+    public void start() {
+        executor.execute(this::connect);
+    }
+
+    private void connect() {
+        if (closed) {
+            return;
+        }
+
+        int current = ++attempt;
+        OBSRemoteController controller = new OBSRemoteController(endpoint.address(), false,
+                endpoint.passwordProtected() ? endpoint.webSocketPassword() : null, false);
+
+        controller.registerConnectionFailedCallback(message -> lost(current, controller, "Error while connecting to WebSocket: " + message));
+        controller.registerOnError((message, throwable) -> lost(current, controller, "An error has occurred: " + message));
+        controller.registerDisconnectCallback(() -> lost(current, controller, "WebSocket disconnected"));
+        controller.registerConnectCallback(response -> runLater(() -> connected(current, controller)));
+
+        // Blocks until the socket is open or the attempt failed.
+        controller.connect();
+    }
+
+    private void connected(int current, OBSRemoteController controller) {
+        if (closed || current != attempt) {
+            controller.disconnect();
+            return;
+        }
+
+        this.controller = controller;
+        this.connected = true;
+        this.backoff = INITIAL_BACKOFF_MILLIS;
+        StreamTextReplacer.getLogger().info(everConnected ? "Reconnected to OBS WebSocket {}." : "Connected to OBS WebSocket {} successfully.", endpoint.name());
+        everConnected = true;
+        onConnected.run();
+    }
+
+    private void lost(int current, OBSRemoteController controller, String reason) {
+        runLater(() -> {
+            if (closed || current != attempt) {
+                return;
+            }
+
+            // Later callbacks of this attempt are ignored from now on.
+            attempt++;
+            boolean wasConnected = connected;
+            connected = false;
+            controller.disconnect();
+            if (wasConnected) {
+                onDisconnected.run();
+            }
+
+            long delay = backoff + ThreadLocalRandom.current().nextLong(backoff / 5 + 1);
+            backoff = Math.min(backoff * 2, MAX_BACKOFF_MILLIS);
+            StreamTextReplacer.getLogger().warn("[{}] {}, retrying in {} ms.", endpoint.name(), reason, delay);
+            executor.schedule(this::connect, delay, TimeUnit.MILLISECONDS);
+        });
+    }
+
+    // Callbacks can still arrive from the WebSocket after closing, they're dropped then.
+    private void runLater(Runnable task) {
+        try {
+            executor.execute(task);
+        } catch (RejectedExecutionException ignored) {
+        }
+    }
+
+    public boolean isConnected() {
+        return connected;
+    }
+
+    // The controller of the current connection. Requests sent while disconnected are lost.
+    public OBSRemoteController getController() {
+        return controller;
+    }
+
+    public void close() {
+        runLater(() -> {
+            closed = true;
+            connected = false;
+            if (controller != null) {
+                controller.disconnect();
+            }
+        });
+        executor.shutdown();
+        try {
+            executor.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
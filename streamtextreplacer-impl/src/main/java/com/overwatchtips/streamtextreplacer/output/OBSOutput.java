@@ -0,0 +1,79 @@
+// This file is part of the StreamTextReplacer project.
+// Copyright (C) 2022 Fernando Pettinelli
+
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// at your option any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program.  If not, see <https://www.gnu.org/licenses/>.
+
+
+package com.overwatchtips.streamtextreplacer.output;
+
+import com.overwatchtips.streamtextreplacer.StreamTextReplacer;
+import com.overwatchtips.streamtextreplacer.records.OBSEndpoint;
+
+// Sends sources to an OBS instance over its WebSocket: the connection, and the stage holding what to send.
+// Every instance is fed from the same placeholder resolution, so each plugin lookup fans out to all of them.
+public class OBSOutput implements OutputSink {
+
+    private final StreamTextReplacer main;
+    private final String name;
+    private final OBSConnection connection;
+    private final OBSOutputStage stage;
+    public OBSOutput(StreamTextReplacer main, OBSEndpoint endpoint) {
+        this.main = main;
+        this.name = endpoint.name();
+        this.connection = new OBSConnection(endpoint, this::onConnected, this::onDisconnected);
+        this.stage = new OBSOutputStage(main, connection);
+    }
+
+    // Sends what changed while OBS was gone. Placeholders aren't looked up again, their cached values are used.
+    private void onConnected() {
+        main.getRefreshScheduler().runOnSchedulerThread(stage::flush);
+    }
+
+    private void onDisconnected() {
+        stage.onDisconnected();
+    }
+
+    @Override
+    public void queue(String sourceName, String text, boolean force) {
+        stage.queue(sourceName, text, force);
+    }
+
+    @Override
+    public void flush() {
+        stage.flush();
+    }
+
+    @Override
+    public void start() {
+        connection.start();
+    }
+
+    @Override
+    public void close() {
+        connection.close();
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    public OBSConnection getConnection() {
+        return connection;
+    }
+
+    public OBSOutputStage getStage() {
+        return stage;
+    }
+}
@@ -0,0 +1,201 @@
+// This file is part of the StreamTextReplacer project.
+// Copyright (C) 2022 Fernando Pettinelli
+
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// at your option any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program.  If not, see <https://www.gnu.org/licenses/>.
+
+
+package com.overwatchtips.streamtextreplacer.output;
+
+import com.overwatchtips.streamtextreplacer.StreamTextReplacer;
+import net.twasi.obsremotejava.requests.ResponseBase;
+
+import java.util.*;
+
+// Collects the sources changed by a render pass and sends them together once the pass is done.
+// obs-websocket-java has no request batching, so the batch goes out as pipelined requests without
+// waiting on each other. A source never has more than one request in flight: newer text is held
+// back until OBS answers, and only the latest one is sent.
+// While OBS is disconnected, batches are kept instead of sent, so that on reconnect only the sources
+// whose latest text differs from what OBS last acknowledged are sent.
+// A source whose request failed or was rejected is sent again with backoff, as it may not be rendered
+// again for a while: only sources whose placeholders changed are, and literal ones never are.
+public class OBSOutputStage {
+
+    private static final long MIN_RETRY_MILLIS = 1000;
+    private static final long MAX_RETRY_MILLIS = 30000;
+
+    private final StreamTextReplacer main;
+    private final OBSConnection connection;
+    private final RenderStateCache renderState = new RenderStateCache();
+    private final Map<String, String> batch = new LinkedHashMap<>();
+    private final Set<String> inFlight = new HashSet<>();
+    private final Map<String, String> deferred = new HashMap<>();
+    // Latest text of each source whose last request failed, until it's sent again.
+    private final Map<String, String> failed = new LinkedHashMap<>();
+    // Sources whose last request failed, so the failure is only logged once until one succeeds.
+    private final Set<String> failing = new HashSet<>();
+    private long retryDelayMillis = MIN_RETRY_MILLIS;
+    private boolean retryScheduled;
+    // Bumped on every disconnect, so answers to requests of an older connection are ignored.
+    private int connectionEpoch;
+    public OBSOutputStage(StreamTextReplacer main, OBSConnection connection) {
+        this.main = main;
+        this.connection = connection;
+    }
+
+    public synchronized void queue(String sourceName, String text, boolean force) {
+        String deferredText = deferred.get(sourceName);
+        boolean changed = deferredText != null ? !text.equals(deferredText) : renderState.hasChanged(sourceName, text);
+
+        if (force || changed) {
+            batch.put(sourceName, text);
+        }else{
+            batch.remove(sourceName);
+        }
+    }
+
+    public void flush() {
+        Map<String, String> toSend = new LinkedHashMap<>();
+        int epoch;
+        synchronized (this) {
+            // Checked under the lock, so a disconnect either comes before this or puts these sources back.
+            if (!connection.isConnected()) {
+                return;
+            }
+
+            epoch = connectionEpoch;
+            for (Map.Entry<String, String> entry : batch.entrySet()) {
+                String sourceName = entry.getKey();
+                if (inFlight.add(sourceName)) {
+                    failed.remove(sourceName);
+                    renderState.markSent(sourceName, entry.getValue());
+                    toSend.put(sourceName, entry.getValue());
+                }else{
+                    deferred.put(sourceName, entry.getValue());
+                }
+            }
+            batch.clear();
+        }
+
+        toSend.forEach((sourceName, text) -> send(epoch, sourceName, text));
+    }
+
+    // Requests in flight when the connection dropped may or may not have been applied. Their sources
+    // are put back in the batch, and sent again on reconnect if they differ from the last acknowledged text.
+    public synchronized void onDisconnected() {
+        connectionEpoch++;
+        for (String sourceName : inFlight) {
+            String sent = renderState.abandon(sourceName);
+            String latest = deferred.containsKey(sourceName) ? deferred.get(sourceName) : sent;
+            if (latest != null && renderState.hasChanged(sourceName, latest)) {
+                batch.putIfAbsent(sourceName, latest);
+            }
+        }
+
+        inFlight.clear();
+        deferred.clear();
+
+        // Sent again on reconnect along with the rest.
+        failed.forEach(batch::putIfAbsent);
+        failed.clear();
+    }
+
+    private void send(int epoch, String sourceName, String text) {
+        Map<String, Object> settings = new HashMap<>();
+        settings.put("text", text);
+
+        long sentAt = System.nanoTime();
+        try {
+            connection.getController().setSourceSettings(sourceName, settings, responseBase -> onResponse(epoch, sourceName, text, sentAt, responseBase));
+        } catch (RuntimeException e) {
+            synchronized (this) {
+                if (failing.add(sourceName)) {
+                    StreamTextReplacer.getLogger().warn("Failed to send the settings of source {}, retrying: {}", sourceName, e.getMessage());
+                }
+
+                if (epoch == connectionEpoch) {
+                    renderState.acknowledge(sourceName, text, false);
+                    onFailed(sourceName, text);
+                }
+            }
+        }
+    }
+
+    // Keeps the latest text of the source to send it again later. Must hold this stage's lock.
+    private void onFailed(String sourceName, String text) {
+        String latest = deferred.remove(sourceName);
+        inFlight.remove(sourceName);
+        failed.put(sourceName, latest != null ? latest : text);
+
+        if (!retryScheduled) {
+            retryScheduled = true;
+            main.getRefreshScheduler().runOnSchedulerThread(this::retryFailed, retryDelayMillis);
+            retryDelayMillis = Math.min(retryDelayMillis * 2, MAX_RETRY_MILLIS);
+        }
+    }
+
+    // Runs on the RefreshScheduler thread, like every other flush.
+    private void retryFailed() {
+        synchronized (this) {
+            retryScheduled = false;
+            if (failed.isEmpty()) {
+                return;
+            }
+
+            failed.forEach(batch::putIfAbsent);
+            failed.clear();
+        }
+
+        flush();
+    }
+
+    private void onResponse(int epoch, String sourceName, String text, long sentAt, ResponseBase responseBase) {
+        boolean successful = "ok".equals(responseBase.getStatus());
+        main.getMetrics().recordObsResponse(System.nanoTime() - sentAt, successful);
+        if (successful) {
+            StreamTextReplacer.getLogger().debug("Changing settings of source {} to {}, returned {}", sourceName, text, responseBase.getStatus());
+        }
+
+        String next;
+        synchronized (this) {
+            if (successful) {
+                if (failing.remove(sourceName) && failing.isEmpty()) {
+                    retryDelayMillis = MIN_RETRY_MILLIS;
+                }
+            }else if (failing.add(sourceName)) {
+                StreamTextReplacer.getLogger().warn("Failed to change settings of source {}, retrying: {}", sourceName, responseBase.getError());
+            }
+
+            if (epoch != connectionEpoch) {
+                return;
+            }
+
+            renderState.acknowledge(sourceName, text, successful);
+            if (!successful) {
+                onFailed(sourceName, text);
+                return;
+            }
+
+            next = deferred.remove(sourceName);
+            if (next == null || !renderState.hasChanged(sourceName, next)) {
+                inFlight.remove(sourceName);
+                return;
+            }
+
+            renderState.markSent(sourceName, next);
+        }
+
+        send(epoch, sourceName, next);
+    }
+}
@@ -0,0 +1,35 @@
+// This file is part of the StreamTextReplacer project.
+// Copyright (C) 2022 Fernando Pettinelli
+
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// at your option any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program.  If not, see <https://www.gnu.org/licenses/>.
+
+
+package com.overwatchtips.streamtextreplacer.output;
+
+// Where rendered source texts are sent. queue and flush are called from the RefreshScheduler thread:
+// a render pass queues each source it rendered, then flushes every sink once.
+public interface OutputSink {
+
+    String getName();
+
+    // Queues the text of a source. Unless force is set, a sink may skip text it already sent.
+    void queue(String sourceName, String text, boolean force);
+
+    // Sends everything queued since the last flush.
+    void flush();
+
+    void start();
+
+    void close();
+}
@@ -0,0 +1,56 @@
+// This file is part of the StreamTextReplacer project.
+// Copyright (C) 2022 Fernando Pettinelli
+
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// at your option any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program.  If not, see <https://www.gnu.org/licenses/>.
+
+
+package com.overwatchtips.streamtextreplacer.output;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Remembers the last text OBS acknowledged for each source, plus the text currently in flight,
+// so unchanged sources aren't sent again. Acknowledgements arrive on the WebSocket thread.
+public class RenderStateCache {
+
+    private final Map<String, String> acknowledged = new ConcurrentHashMap<>();
+    private final Map<String, String> pending = new ConcurrentHashMap<>();
+
+    public boolean hasChanged(String sourceName, String text) {
+        String expected = pending.get(sourceName);
+        if (expected == null) {
+            expected = acknowledged.get(sourceName);
+        }
+
+        return !text.equals(expected);
+    }
+
+    public void markSent(String sourceName, String text) {
+        pending.put(sourceName, text);
+    }
+
+    // Forgets the text in flight, e.g. because the connection dropped before OBS answered. Returns that text.
+    public String abandon(String sourceName) {
+        return pending.remove(sourceName);
+    }
+
+    public void acknowledge(String sourceName, String text, boolean successful) {
+        pending.remove(sourceName, text);
+        if (successful) {
+            acknowledged.put(sourceName, text);
+        }else{
+            acknowledged.remove(sourceName);
+        }
+    }
+}
@@ -0,0 +1,104 @@
+// This file is part of the StreamTextReplacer project.
+// Copyright (C) 2022 Fernando Pettinelli
+
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// at your option any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program.  If not, see <https://www.gnu.org/licenses/>.
+
+package com.overwatchtips.streamtextreplacer.plugins;
+
+import com.overwatchtips.streamtextreplacer.StreamTextReplacer;
+import com.overwatchtips.streamtextreplacer.api.ReplacerPlugin;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+// Stops calling a plugin that keeps failing, e.g. while the service behind it is down.
+// Closed: requests go through. Open: nothing is requested and sources keep their cached values.
+// Half-open: once the backoff has passed, a single probe is let through. If it resolves anything the
+// breaker closes, otherwise it opens again with twice the backoff.
+public class CircuitBreaker {
+
+    public enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    // Lookups in a row that resolved nothing before the breaker opens.
+    private static final int FAILURE_THRESHOLD = 3;
+    private static final long INITIAL_BACKOFF_MILLIS = 2000;
+    private static final long MAX_BACKOFF_MILLIS = 300000;
+
+    private final ReplacerPlugin plugin;
+    private State state = State.CLOSED;
+    private int failures;
+    private long backoff = INITIAL_BACKOFF_MILLIS;
+    private long retryAt;
+    public CircuitBreaker(ReplacerPlugin plugin) {
+        this.plugin = plugin;
+    }
+
+    // Whether a new request may be sent. Moves an open breaker whose backoff has passed to half-open,
+    // in which case the caller's request is the probe.
+    public synchronized boolean allowRequest() {
+        if (state == State.CLOSED) {
+            return true;
+        }
+
+        if (state == State.HALF_OPEN || System.nanoTime() - retryAt < 0) {
+            return false;
+        }
+
+        state = State.HALF_OPEN;
+        return true;
+    }
+
+    public synchronized void recordSuccess() {
+        if (state != State.CLOSED) {
+            StreamTextReplacer.getLogger().info("{} is resolving placeholders again.", plugin.getName());
+        }
+
+        state = State.CLOSED;
+        failures = 0;
+        backoff = INITIAL_BACKOFF_MILLIS;
+    }
+
+    public synchronized void recordFailure() {
+        if (state == State.CLOSED && ++failures < FAILURE_THRESHOLD) {
+            return;
+        }
+
+        long delay = backoff + ThreadLocalRandom.current().nextLong(backoff / 5 + 1);
+        if (state == State.CLOSED) {
+            StreamTextReplacer.getLogger().warn("{} failed {} times in a row, pausing it for {} ms and using cached values.",
+                    plugin.getName(), failures, delay);
+        }else{
+            StreamTextReplacer.getLogger().debug("{} is still failing, trying again in {} ms.", plugin.getName(), delay);
+        }
+
+        state = State.OPEN;
+        retryAt = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(delay);
+        backoff = Math.min(backoff * 2, MAX_BACKOFF_MILLIS);
+    }
+
+    // How long until an open breaker lets a probe through, 0 otherwise.
+    public synchronized long getRetryDelayMillis() {
+        if (state != State.OPEN) {
+            return 0;
+        }
+
+        return Math.max(0, TimeUnit.NANOSECONDS.toMillis(retryAt - System.nanoTime()));
+    }
+
+    public synchronized State getState() {
+        return state;
+    }
+}
@@ -0,0 +1,62 @@
+// This file is part of the StreamTextReplacer project.
+// Copyright (C) 2022 Fernando Pettinelli
+
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// at your option any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program.  If not, see <https://www.gnu.org/licenses/>.
+
+
+package com.overwatchtips.streamtextreplacer.plugins;
+
+import com.overwatchtips.streamtextreplacer.StreamTextReplacer;
+import com.overwatchtips.streamtextreplacer.api.PlaceholderPublisher;
+import com.overwatchtips.streamtextreplacer.api.ReplacerPlugin;
+import com.overwatchtips.streamtextreplacer.templates.PlaceholderSchema;
+import com.overwatchtips.streamtextreplacer.threads.RefreshScheduler;
+
+import java.util.Objects;
+
+public class HostPublisher implements PlaceholderPublisher {
+
+    private final StreamTextReplacer main;
+    private final PluginManager pluginManager;
+    private final ReplacerPlugin plugin;
+    public HostPublisher(StreamTextReplacer main, PluginManager pluginManager, ReplacerPlugin plugin) {
+        this.main = main;
+        this.pluginManager = pluginManager;
+        this.plugin = plugin;
+    }
+
+    @Override
+    public void publish(String params, String value) {
+        Objects.requireNonNull(value, "Published values cannot be null.");
+
+        // Cached under the same key templates are bound to, whatever case the params are written in.
+        PlaceholderSchema schema = pluginManager.getSchema(plugin.getIdentifier());
+        if (schema == null || schema.getPlugin() != plugin) {
+            // Published from onEnable, before the plugin's schema was registered.
+            schema = new PlaceholderSchema(plugin);
+        }
+
+        String placeholder = schema.cacheKey(params);
+        if (placeholder == null) {
+            throw new IllegalArgumentException(params + " isn't a placeholder of " + plugin.getName() + ".");
+        }
+        pluginManager.getPlaceholderResolver().put(plugin, placeholder, value);
+
+        // Values published from onEnable are picked up by the first render instead.
+        RefreshScheduler refreshScheduler = main.getRefreshScheduler();
+        if (refreshScheduler != null) {
+            refreshScheduler.renderChanged();
+        }
+    }
+}
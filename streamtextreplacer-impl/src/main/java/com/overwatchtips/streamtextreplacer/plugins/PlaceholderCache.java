@@ -0,0 +1,148 @@
+// This file is part of the StreamTextReplacer project.
+// Copyright (C) 2022 Fernando Pettinelli
+
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// at your option any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program.  If not, see <https://www.gnu.org/licenses/>.
+
+
+package com.overwatchtips.streamtextreplacer.plugins;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+// Resolved placeholder values, keyed on PlaceholderSegment.key. Each entry has its own TTL, and the least
+// recently used entries are evicted once the cache is full. Expired entries are still served
+// (stale-while-revalidate): the caller is told so it can refresh them in the background, and the
+// entry is leased for another TTL so a plugin that keeps failing isn't asked again on every render.
+// Pinned placeholders are skipped when evicting, so a value a source still shows is never dropped.
+public class PlaceholderCache {
+
+    private final int maxSize;
+    private final Map<String, Entry> entries;
+    private volatile Set<String> pinned = Collections.emptySet();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder staleHits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    public PlaceholderCache(int maxSize) {
+        this.maxSize = maxSize;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                if (size() <= PlaceholderCache.this.maxSize) {
+                    return false;
+                }
+
+                // Evicts the least recently used entry that isn't pinned. If all of them are, the cache grows instead.
+                Set<String> pinned = PlaceholderCache.this.pinned;
+                Iterator<String> iterator = keySet().iterator();
+                while (iterator.hasNext()) {
+                    if (!pinned.contains(iterator.next())) {
+                        iterator.remove();
+                        evictions.increment();
+                        break;
+                    }
+                }
+                return false;
+            }
+        };
+    }
+
+    // Returns false if the placeholder already had this value.
+    public synchronized boolean put(String placeholder, String value, long ttlMillis) {
+        long ttl = TimeUnit.MILLISECONDS.toNanos(Math.max(1, ttlMillis));
+        Entry previous = entries.put(placeholder, new Entry(value, ttl, System.nanoTime() + ttl));
+        return previous == null || !previous.value.equals(value);
+    }
+
+    // Returns the cached value, or null on a miss. onStale is run if the value has expired.
+    public <T> String get(String placeholder, T context, Consumer<T> onStale) {
+        boolean stale;
+        String value;
+        synchronized (this) {
+            Entry entry = entries.get(placeholder);
+            if (entry == null) {
+                misses.increment();
+                return null;
+            }
+
+            long now = System.nanoTime();
+            stale = now - entry.expiresAt >= 0;
+            if (stale) {
+                entry.expiresAt = now + entry.ttl;
+                staleHits.increment();
+            }else{
+                hits.increment();
+            }
+            value = entry.value;
+        }
+
+        if (stale) {
+            onStale.accept(context);
+        }
+
+        return value;
+    }
+
+    // Replaces the placeholders that must not be evicted. The set isn't copied, so it must not change afterwards.
+    public void setPinned(Set<String> placeholders) {
+        pinned = placeholders;
+    }
+
+    public synchronized boolean contains(String placeholder) {
+        return entries.containsKey(placeholder);
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getStaleHits() {
+        return staleHits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    private static final class Entry {
+        private final String value;
+        private final long ttl;
+        private long expiresAt;
+
+        private Entry(String value, long ttl, long expiresAt) {
+            this.value = value;
+            this.ttl = ttl;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
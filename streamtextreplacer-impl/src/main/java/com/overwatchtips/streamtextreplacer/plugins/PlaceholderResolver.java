@@ -0,0 +1,232 @@
+// This file is part of the StreamTextReplacer project.
+// Copyright (C) 2022 Fernando Pettinelli
+
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// at your option any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program.  If not, see <https://www.gnu.org/licenses/>.
+
+
+package com.overwatchtips.streamtextreplacer.plugins;
+
+import com.overwatchtips.streamtextreplacer.StreamTextReplacer;
+import com.overwatchtips.streamtextreplacer.api.ReplacerPlugin;
+import com.overwatchtips.streamtextreplacer.metrics.Metrics;
+import com.overwatchtips.streamtextreplacer.metrics.PluginMetrics;
+import com.overwatchtips.streamtextreplacer.templates.PlaceholderSegment;
+import com.overwatchtips.streamtextreplacer.threads.RefreshScheduler;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+// Runs plugin lookups on a bounded pool, one task per plugin, so a slow plugin doesn't hold up the others.
+// Placeholders of the same plugin are still requested in order, so the sameCycle contract holds.
+// Requests are single-flight: a placeholder whose request is still running isn't requested again, the
+// caller shares its result instead. So however many ticks, forced refreshes and sources ask for the same
+// placeholder at once, its plugin is only called once for it. A plugin whose breaker is open isn't called at all.
+public class PlaceholderResolver {
+
+    private static final int MAX_THREADS = 8;
+    // How long a batch may take before its requests are failed, so a plugin that hangs doesn't hold
+    // every later lookup of it. The plugin's thread isn't stopped, it's only no longer waited for.
+    private static final long REQUEST_TIMEOUT_MILLIS = TimeUnit.MINUTES.toMillis(2);
+
+    private final ThreadPoolExecutor executor;
+    private final PlaceholderCache cache;
+    private final Metrics metrics;
+    private final Consumer<PlaceholderSegment> onStale;
+    // Requests that haven't finished yet. Each future completes with the value, or null if it wasn't resolved.
+    private final Map<RequestKey, CompletableFuture<String>> inFlight = new ConcurrentHashMap<>();
+    // The last batch of requests started per plugin. A new batch waits for it, so a plugin only ever
+    // handles one batch at a time, unless one ran past REQUEST_TIMEOUT_MILLIS.
+    private final Map<ReplacerPlugin, CompletableFuture<?>> lastBatch = new HashMap<>();
+    // Placeholders whose value changed since the last render, so only the sources using them are rendered.
+    private final Set<String> changed = ConcurrentHashMap.newKeySet();
+    private final Map<ReplacerPlugin, CircuitBreaker> breakers = new ConcurrentHashMap<>();
+
+    public PlaceholderResolver(int cacheSize, Metrics metrics, Consumer<PlaceholderSegment> onStale) {
+        this.cache = new PlaceholderCache(cacheSize);
+        this.metrics = metrics;
+        this.onStale = onStale;
+
+        AtomicInteger threadCount = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(MAX_THREADS, MAX_THREADS, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), runnable -> {
+            Thread thread = new Thread(runnable, "PlaceholderResolver-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.executor.allowCoreThreadTimeOut(true);
+    }
+
+    // Requests every placeholder of the plugin that isn't already being requested, and waits for all of them.
+    // The future completes with false if nothing was resolved, or exceptionally if the plugin threw.
+    // While the plugin's breaker is open, only requests already in flight are waited for.
+    public synchronized CompletableFuture<Boolean> resolve(ReplacerPlugin plugin, Collection<PlaceholderSegment> placeholders) {
+        PluginMetrics pluginMetrics = metrics.getPluginMetrics(plugin);
+        List<CompletableFuture<String>> results = new ArrayList<>(placeholders.size());
+        Map<PlaceholderSegment, CompletableFuture<String>> batch = new LinkedHashMap<>();
+        Boolean allowed = null;
+        for (PlaceholderSegment placeholder : placeholders) {
+            RequestKey key = new RequestKey(plugin, placeholder.args());
+            CompletableFuture<String> result = inFlight.get(key);
+            if (result == null) {
+                // Only asked once a new request is needed, as a half-open breaker lets a single one through.
+                if (allowed == null) {
+                    allowed = getBreaker(plugin).allowRequest();
+                }
+                if (!allowed) {
+                    continue;
+                }
+
+                result = new CompletableFuture<>();
+                inFlight.put(key, result);
+                batch.put(placeholder, result);
+            }else{
+                pluginMetrics.recordCoalesced();
+            }
+
+            results.add(result);
+        }
+
+        if (!batch.isEmpty()) {
+            CompletableFuture<?> previous = lastBatch.getOrDefault(plugin, CompletableFuture.completedFuture(null));
+            CompletableFuture<Boolean> requested = previous.handleAsync((ignored, throwable) -> request(plugin, batch), executor);
+            requested.orTimeout(REQUEST_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS).whenComplete((ignored, throwable) -> {
+                if (throwable instanceof TimeoutException) {
+                    abandon(plugin, batch, throwable);
+                }
+            });
+            lastBatch.put(plugin, requested);
+        }
+
+        return CompletableFuture.allOf(results.toArray(CompletableFuture[]::new))
+                .thenApply(ignored -> results.stream().anyMatch(result -> result.join() != null));
+    }
+
+    private boolean request(ReplacerPlugin plugin, Map<PlaceholderSegment, CompletableFuture<String>> batch) {
+        PluginMetrics pluginMetrics = metrics.getPluginMetrics(plugin);
+        Map<PlaceholderSegment, String> values = new HashMap<>();
+        int cachedFallbacks = 0;
+        boolean resolvedAny = false;
+        boolean sameCycle = false;
+        for (Map.Entry<PlaceholderSegment, CompletableFuture<String>> entry : batch.entrySet()) {
+            PlaceholderSegment placeholder = entry.getKey();
+            long start = System.nanoTime();
+            String parsed;
+            try {
+                parsed = placeholder.handle().resolve(sameCycle);
+            } catch (Throwable e) {
+                // Errors too, e.g. a NoClassDefFoundError from a broken jar: a future left in inFlight
+                // would have every later lookup of the placeholder wait on it forever.
+                pluginMetrics.recordError(System.nanoTime() - start);
+                getBreaker(plugin).recordFailure();
+                // The rest of the batch fails along with it, as it did when a lookup was a single task.
+                batch.forEach((failed, result) -> complete(plugin, failed, result, null, e));
+                throw e;
+            }
+
+            // Set whatever the result, so a plugin whose first request failed isn't asked to fetch again per placeholder.
+            sameCycle = true;
+            pluginMetrics.recordRequest(System.nanoTime() - start, parsed != null);
+            if (parsed == null) {
+                if (cache.contains(placeholder.key())) {
+                    cachedFallbacks++;
+                }else{
+                    // Never resolved yet, so its sources are sent with the raw token rather than not at all.
+                    changed.add(placeholder.key());
+                }
+            }else{
+                put(plugin, placeholder.key(), parsed);
+                resolvedAny = true;
+            }
+
+            values.put(placeholder, parsed);
+        }
+
+        if (cachedFallbacks > 0) {
+            StreamTextReplacer.getLogger().warn("{} placeholder(s) of {} were not resolved, so cached versions were used instead.",
+                    cachedFallbacks, plugin.getName());
+        }
+
+        // The breaker is updated before anyone waiting on the batch hears back, so they see its new state.
+        if (resolvedAny) {
+            getBreaker(plugin).recordSuccess();
+        }else{
+            getBreaker(plugin).recordFailure();
+        }
+
+        batch.forEach((placeholder, result) -> complete(plugin, placeholder, result, values.get(placeholder), null));
+        return resolvedAny;
+    }
+
+    // Fails whatever the batch hasn't completed yet, so the next lookup starts new requests instead of waiting on these.
+    private void abandon(ReplacerPlugin plugin, Map<PlaceholderSegment, CompletableFuture<String>> batch, Throwable throwable) {
+        StreamTextReplacer.getLogger().warn("{} didn't finish resolving placeholders within {} seconds, no longer waiting for it.",
+                plugin.getName(), TimeUnit.MILLISECONDS.toSeconds(REQUEST_TIMEOUT_MILLIS));
+        getBreaker(plugin).recordFailure();
+        batch.forEach((placeholder, result) -> complete(plugin, placeholder, result, null, throwable));
+    }
+
+    // Ends the request before handing out its result, so anyone asking afterwards starts a new one.
+    private void complete(ReplacerPlugin plugin, PlaceholderSegment placeholder, CompletableFuture<String> result, String value, Throwable throwable) {
+        inFlight.remove(new RequestKey(plugin, placeholder.args()), result);
+        if (throwable == null) {
+            result.complete(value);
+        }else{
+            result.completeExceptionally(throwable);
+        }
+    }
+
+    // Forgets the plugin's last batch and returns it, so a plugin being unloaded can wait for it to finish.
+    public synchronized CompletableFuture<?> release(ReplacerPlugin plugin) {
+        breakers.remove(plugin);
+        CompletableFuture<?> future = lastBatch.remove(plugin);
+        return future == null ? CompletableFuture.completedFuture(null) : future;
+    }
+
+    // Entries go stale once their plugin has missed a whole refresh.
+    public void put(ReplacerPlugin plugin, String placeholder, String value) {
+        if (cache.put(placeholder, value, RefreshScheduler.getRefreshInterval(plugin) * 2)) {
+            changed.add(placeholder);
+        }
+    }
+
+    // Returns the placeholders that changed since the last call, and clears them.
+    public Set<String> drainChanged() {
+        Set<String> drained = new HashSet<>();
+        for (Iterator<String> iterator = changed.iterator(); iterator.hasNext(); ) {
+            drained.add(iterator.next());
+            iterator.remove();
+        }
+
+        return drained;
+    }
+
+    public String getCached(PlaceholderSegment placeholder) {
+        return cache.get(placeholder.key(), placeholder, onStale);
+    }
+
+    public CircuitBreaker getBreaker(ReplacerPlugin plugin) {
+        return breakers.computeIfAbsent(plugin, CircuitBreaker::new);
+    }
+
+    public PlaceholderCache getCache() {
+        return cache;
+    }
+
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private record RequestKey(ReplacerPlugin plugin, String args) {}
+}
@@ -0,0 +1,248 @@
+// This file is part of the StreamTextReplacer project.
+// Copyright (C) 2022 Fernando Pettinelli
+
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// at your option any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program.  If not, see <https://www.gnu.org/licenses/>.
+
+
+package com.overwatchtips.streamtextreplacer.plugins;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.overwatchtips.streamtextreplacer.StreamTextReplacer;
+import com.overwatchtips.streamtextreplacer.api.ReplacerPlugin;
+import com.overwatchtips.streamtextreplacer.records.IndexedJar;
+import com.overwatchtips.streamtextreplacer.records.PluginJar;
+
+import java.io.*;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.jar.Attributes;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.jar.Manifest;
+
+// Finds the ReplacerPlugin entry classes of each jar in the plugins folder, and loads only those.
+// A jar declares its entry class with the StreamTextReplacer-Plugin manifest attribute, or lists them in
+// META-INF/services/com.overwatchtips.streamtextreplacer.api.ReplacerPlugin. Jars declaring neither are
+// scanned class by class like before. Results are kept in an index keyed on the jar's hash, so a jar is
+// only looked into again once it changes. Jars are processed in parallel.
+public class PluginDiscovery {
+
+    public static final String MANIFEST_ATTRIBUTE = "StreamTextReplacer-Plugin";
+    private static final String SERVICE_FILE = "META-INF/services/" + ReplacerPlugin.class.getName();
+    private static final String INDEX_FILE = "plugin-index.json";
+
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final File indexFile;
+    private final Map<String, IndexedJar> index = new ConcurrentHashMap<>();
+    public PluginDiscovery(File pluginsFolder) {
+        this.indexFile = new File(pluginsFolder, INDEX_FILE);
+        loadIndex();
+    }
+
+    // Jars that fail to load are logged and left out. The result is in file name order.
+    public List<PluginJar> discover(File[] jars) {
+        Map<String, IndexedJar> previous = new HashMap<>(index);
+        index.clear();
+
+        List<PluginJar> pluginJars = Arrays.stream(jars)
+                .sorted(Comparator.comparing(File::getName))
+                .parallel()
+                .map(jar -> load(jar, previous.get(jar.getName())))
+                .filter(Objects::nonNull)
+                .toList();
+
+        if (!index.equals(previous)) {
+            saveIndex();
+        }
+
+        return pluginJars;
+    }
+
+    // Loads a single jar, e.g. one that changed while running. Returns null if it failed to load.
+    public PluginJar discover(File jar) {
+        PluginJar pluginJar = load(jar, index.get(jar.getName()));
+        saveIndex();
+        return pluginJar;
+    }
+
+    // Whether the jar still has the hash it was indexed with.
+    public boolean isUnchanged(File jar) {
+        IndexedJar indexed = index.get(jar.getName());
+        try {
+            return indexed != null && indexed.hash().equals(hash(jar));
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    public void forget(String jarName) {
+        if (index.remove(jarName) != null) {
+            saveIndex();
+        }
+    }
+
+    private PluginJar load(File jar, IndexedJar indexed) {
+        URLClassLoader classLoader = null;
+        try {
+            String hash = hash(jar);
+            List<String> classNames;
+            if (indexed != null && indexed.hash().equals(hash)) {
+                classNames = indexed.pluginClasses();
+            }else{
+                classNames = findPluginClasses(jar);
+            }
+            index.put(jar.getName(), new IndexedJar(hash, classNames));
+
+            classLoader = new URLClassLoader(new URL[]{jar.toURI().toURL()}, ReplacerPlugin.class.getClassLoader());
+            List<Class<?>> pluginClasses = new ArrayList<>(classNames.size());
+            for (String className : classNames) {
+                Class<?> clazz = classLoader.loadClass(className);
+                if (!ReplacerPlugin.class.isAssignableFrom(clazz)) {
+                    StreamTextReplacer.getLogger().warn("{} in {} is not a ReplacerPlugin, skipping it.", className, jar.getName());
+                    continue;
+                }
+
+                pluginClasses.add(clazz);
+            }
+
+            return new PluginJar(jar, classLoader, pluginClasses);
+        } catch (IOException | ClassNotFoundException | LinkageError e) {
+            StreamTextReplacer.getLogger().error("Plugin {} failed to load: {}", jar.getName(), e.toString());
+            index.remove(jar.getName());
+            closeQuietly(classLoader);
+            return null;
+        }
+    }
+
+    private List<String> findPluginClasses(File jar) throws IOException {
+        try (JarFile jarFile = new JarFile(jar)) {
+            Manifest manifest = jarFile.getManifest();
+            String entryClass = manifest == null ? null : manifest.getMainAttributes().getValue(MANIFEST_ATTRIBUTE);
+            if (entryClass != null && !entryClass.isBlank()) {
+                return List.of(entryClass.trim());
+            }
+
+            JarEntry serviceEntry = jarFile.getJarEntry(SERVICE_FILE);
+            if (serviceEntry != null) {
+                return readServiceFile(jarFile, serviceEntry);
+            }
+        }
+
+        StreamTextReplacer.getLogger().warn("{} doesn't declare its plugin class in its manifest ({}), so every class in it has to be scanned.",
+                jar.getName(), MANIFEST_ATTRIBUTE);
+        return scanClasses(jar);
+    }
+
+    private static List<String> readServiceFile(JarFile jarFile, JarEntry serviceEntry) throws IOException {
+        List<String> classNames = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(jarFile.getInputStream(serviceEntry), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                int comment = line.indexOf('#');
+                String className = (comment < 0 ? line : line.substring(0, comment)).trim();
+                if (!className.isEmpty()) {
+                    classNames.add(className);
+                }
+            }
+        }
+
+        return classNames;
+    }
+
+    // The old way: load every class in a throwaway class loader and keep the ReplacerPlugins.
+    // Classes that can't be linked, e.g. because of a missing optional dependency, are skipped.
+    private static List<String> scanClasses(File jar) throws IOException {
+        List<String> classNames = new ArrayList<>();
+        try (JarFile jarFile = new JarFile(jar);
+             URLClassLoader classLoader = new URLClassLoader(new URL[]{jar.toURI().toURL()}, ReplacerPlugin.class.getClassLoader())) {
+
+            Enumeration<JarEntry> entries = jarFile.entries();
+            while (entries.hasMoreElements()) {
+                String name = entries.nextElement().getName();
+                if (!name.endsWith(".class") || name.endsWith("module-info.class") || name.startsWith("META-INF/")) {
+                    continue;
+                }
+
+                String className = name.substring(0, name.length() - ".class".length()).replace('/', '.');
+                try {
+                    Class<?> clazz = Class.forName(className, false, classLoader);
+                    if (ReplacerPlugin.class.isAssignableFrom(clazz) && clazz != ReplacerPlugin.class) {
+                        classNames.add(className);
+                    }
+                } catch (ClassNotFoundException | LinkageError ignored) {
+                }
+            }
+        }
+
+        return classNames;
+    }
+
+    private static String hash(File jar) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+
+        try (InputStream in = new DigestInputStream(new BufferedInputStream(new FileInputStream(jar)), digest)) {
+            in.transferTo(OutputStream.nullOutputStream());
+        }
+
+        StringBuilder builder = new StringBuilder();
+        for (byte b : digest.digest()) {
+            builder.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+
+        return builder.toString();
+    }
+
+    private void loadIndex() {
+        if (!indexFile.exists()) {
+            return;
+        }
+
+        try {
+            index.putAll(mapper.readValue(indexFile, new TypeReference<Map<String, IndexedJar>>() {}));
+        } catch (IOException e) {
+            StreamTextReplacer.getLogger().warn("Could not read {}, every plugin will be scanned again: {}", indexFile.getName(), e.getMessage());
+        }
+    }
+
+    private void saveIndex() {
+        try {
+            mapper.writerWithDefaultPrettyPrinter().writeValue(indexFile, new TreeMap<>(index));
+        } catch (IOException e) {
+            StreamTextReplacer.getLogger().warn("Could not save {}: {}", indexFile.getName(), e.getMessage());
+        }
+    }
+
+    private static void closeQuietly(URLClassLoader classLoader) {
+        if (classLoader == null) {
+            return;
+        }
+
+        try {
+            classLoader.close();
+        } catch (IOException ignored) {
+        }
+    }
+}
@@ -14,111 +14,105 @@
 // You should have received a copy of the GNU General Public License
 // along with this program.  If not, see <https://www.gnu.org/licenses/>.
 
+
 package com.overwatchtips.streamtextreplacer.plugins;
 
 import com.overwatchtips.streamtextreplacer.StreamTextReplacer;
 import com.overwatchtips.streamtextreplacer.api.ReplacerPlugin;
 import com.overwatchtips.streamtextreplacer.api.commands.ConsoleCommand;
-import com.overwatchtips.streamtextreplacer.records.OBSSettings;
+import com.overwatchtips.streamtextreplacer.records.CompiledSource;
+import com.overwatchtips.streamtextreplacer.records.PluginJar;
+import com.overwatchtips.streamtextreplacer.records.SourceKey;
+import com.overwatchtips.streamtextreplacer.templates.PlaceholderSchema;
+import com.overwatchtips.streamtextreplacer.templates.PlaceholderSegment;
+import com.overwatchtips.streamtextreplacer.threads.RefreshScheduler;
 import org.apache.logging.log4j.Logger;
 
 import java.io.File;
-import java.io.FilenameFilter;
 import java.io.IOException;
 import java.lang.reflect.InvocationTargetException;
-import java.net.URL;
-import java.net.URLClassLoader;
-import java.time.Instant;
 import java.util.*;
-import java.util.jar.JarEntry;
-import java.util.jar.JarInputStream;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 public class PluginManager {
 
+    // How long a running lookup of a plugin being unloaded is waited for before disabling it anyway.
+    private static final long UNLOAD_TIMEOUT_MILLIS = 5000;
+
     private final StreamTextReplacer main;
-    private final Map<String, ReplacerPlugin> loadedPlugins = new HashMap<>();
-    private final Map<ReplacerPlugin, Long> intervalTime = new HashMap<>();
-    private final Map<String, String> cachedPlaceholders = new HashMap<>();
+    private final File pluginsFolder = new File("plugins");
+    private final PluginDiscovery pluginDiscovery;
+    private final Map<String, ReplacerPlugin> loadedPlugins = new ConcurrentHashMap<>();
+    // Same keys as loadedPlugins, read once when a plugin is enabled.
+    private final Map<String, PlaceholderSchema> schemas = new ConcurrentHashMap<>();
+    // Keyed on the jar's file name. Only changed while holding this manager's lock.
+    private final Map<String, PluginJar> pluginJars = new HashMap<>();
+    private final Map<String, List<ReplacerPlugin>> pluginsByJar = new HashMap<>();
+    private final Map<ReplacerPlugin, Set<String>> commandsByPlugin = new HashMap<>();
+    private final PlaceholderResolver placeholderResolver;
+    private final SourceRenderer sourceRenderer;
+    private volatile SourceIndex sourceIndex;
     public PluginManager(StreamTextReplacer main) {
         this.main = main;
-        loadPlugins();
-    }
-
-    public void refreshPlaceholders(boolean bypassCache) {
-        OBSSettings obsSettings = main.getObsConfig().getObsSettings();
-        Set<ReplacerPlugin> usedPlugins = new HashSet<>();
-
-        obsSettings.customSources().forEach(obsSource -> {
-            Map<String, Object> settings = new HashMap<>();
-            String text = obsSource.text();
-
-            for (String placeholder : substringsBetween(text, '%')) {
-                String cached = cachedPlaceholders.get(placeholder);
-                String placeholderWithoutCharacters = placeholder.substring(1, placeholder.length() - 1);
-                String[] split = placeholderWithoutCharacters.split("_");
-                if (split.length <= 1) {
-                    continue;
-                }
-
-                ReplacerPlugin plugin = main.getPluginManager().getPluginByName(split[0]);
-                if (plugin == null) {
-                    continue;
-                }
+        this.placeholderResolver = new PlaceholderResolver(main.getObsConfig().getObsSettings().placeholderCacheSize(),
+                main.getMetrics(), this::revalidate);
+        this.sourceRenderer = new SourceRenderer(placeholderResolver, main::getOutput, main.getOutputs());
 
-                if (bypassCache || !isInCooldown(plugin) || cached == null) {
-                    String args = String.join("_", Arrays.copyOfRange(split, 1, split.length));
-                    String parsed = plugin.onRequest(args, usedPlugins.contains(plugin));
+        if (!pluginsFolder.exists() || !pluginsFolder.isDirectory()) {
+            pluginsFolder.mkdir();
+        }
+        this.pluginDiscovery = new PluginDiscovery(pluginsFolder);
 
-                    if (parsed == null) {
-                        if (cached != null) {
-                            text = text.replace(placeholder, cached);
-                            StreamTextReplacer.getLogger().warn(placeholder + " was not resolved, so a cached version was used instead.");
-                        }
-                        continue;
-                    }
+        loadPlugins();
+        this.sourceIndex = new SourceIndex(main.getObsConfig().getCompiledSources(), schemas::get);
+        pinPlaceholders(sourceIndex);
+    }
 
-                    cachedPlaceholders.put(placeholder, parsed);
-                    usedPlugins.add(plugin);
+    // Must only be called from the RefreshScheduler thread, as the renderer isn't thread safe.
+    public void renderSources(Collection<CompiledSource> sources, boolean bypassCache) {
+        sourceRenderer.render(sources, bypassCache);
+    }
 
-                    text = text.replace(placeholder, parsed);
-                }else{
-                    text = text.replace(placeholder, cached);
-                }
-            }
+    private void revalidate(PlaceholderSegment placeholder) {
+        RefreshScheduler refreshScheduler = main.getRefreshScheduler();
+        if (refreshScheduler != null) {
+            refreshScheduler.revalidate(placeholder.plugin());
+        }
+    }
 
-            settings.put("text", text);
+    public List<CompiledSource> getCompiledSources() {
+        return sourceIndex.getCompiledSources();
+    }
 
-            main.getController().setSourceSettings(obsSource.sourceName(), settings, responseBase ->
-                    StreamTextReplacer.getLogger().debug("Changing settings of source {} to {}, returned {}", obsSource.sourceName(), obsSource.text(), responseBase.getStatus()));
-        });
-        usedPlugins.forEach(plugin -> intervalTime.put(plugin, Instant.now().getEpochSecond() + plugin.getRefreshTime()));
+    // Sources that don't depend on any loaded plugin, so they only need to be sent once.
+    public List<CompiledSource> getStaticSources() {
+        return sourceIndex.getStaticSources();
     }
 
-    // adapted from Apache Commons Lang 3
-    private List<String> substringsBetween(String text, char separator) {
-        List<String> list = new ArrayList<>();
-        int position = 0;
-        while (position < text.length()) {
-            int start = text.indexOf(separator, position);
-            if (start < 0) {
-                break;
-            }
+    // Plugins referenced by at least one source.
+    public Set<ReplacerPlugin> getUsedPlugins() {
+        return sourceIndex.getUsedPlugins();
+    }
 
-            start += 1;
-            int end = text.indexOf(separator, start);
-            if (end < 0) {
-                break;
-            }
+    // Distinct placeholders of the plugin across all sources.
+    public Collection<PlaceholderSegment> getPlaceholdersOf(ReplacerPlugin plugin) {
+        return sourceIndex.getPlaceholdersOf(plugin);
+    }
 
-            list.add(text.substring(start - 1, end + 1));
-            position = end + 1;
-        }
+    public List<CompiledSource> getSourcesUsing(Collection<String> placeholders) {
+        return sourceIndex.getSourcesUsing(placeholders);
+    }
 
-        return list;
+    public PlaceholderResolver getPlaceholderResolver() {
+        return placeholderResolver;
     }
 
-    private boolean isInCooldown(ReplacerPlugin plugin) {
-        return intervalTime.getOrDefault(plugin, 0L) > Instant.now().getEpochSecond();
+    // The schema of the loaded plugin with this identifier, or null if there's none.
+    public PlaceholderSchema getSchema(String identifier) {
+        return schemas.get(identifier);
     }
 
     public ReplacerPlugin getPluginByName(String name) {
@@ -129,96 +123,231 @@ public class PluginManager {
         return loadedPlugins.values();
     }
 
-    private void loadPlugins() {
-        File pluginsFolder = new File("plugins");
-        if (!pluginsFolder.exists() || !pluginsFolder.isDirectory()) {
-            pluginsFolder.mkdir();
+    public File getPluginsFolder() {
+        return pluginsFolder;
+    }
+
+    private synchronized void loadPlugins() {
+        File[] jars = pluginsFolder.listFiles((dir, name) -> name.endsWith(".jar"));
+        if (jars == null) {
+            return;
         }
 
-        List<Class<?>> subs = getClasses(pluginsFolder);
-        for (Class<?> clazz : subs) {
-            try {
-                ReplacerPlugin plugin = (ReplacerPlugin)clazz.getConstructor(Logger.class).newInstance(StreamTextReplacer.getLogger());
-                StreamTextReplacer.getLogger().info("Enabling {}, version {} by {}", plugin.getName(), plugin.getVersion(), plugin.getAuthor());
-                plugin.setDataFolder(new File(pluginsFolder, plugin.getName()));
+        List<ReplacerPlugin> plugins = new ArrayList<>();
+        for (PluginJar pluginJar : pluginDiscovery.discover(jars)) {
+            plugins.addAll(enableJar(pluginJar));
+        }
 
-                for (Map.Entry<String, ConsoleCommand> entry : plugin.getCommandsToRegister().entrySet()) {
-                    String commandName = entry.getKey();
-                    ConsoleCommand command = entry.getValue();
+        registerCommands(plugins, Collections.emptySet());
+    }
+
+    // Unloads the plugins of a jar that changed or was removed, and loads it again if it still exists.
+    // Other plugins keep running, and cached values stay until the new plugin replaces them.
+    // Must not be called from the RefreshScheduler thread, as it waits on it.
+    public synchronized void reloadJar(File jar) {
+        String jarName = jar.getName();
+        PluginJar oldJar = pluginJars.get(jarName);
+        if (oldJar != null && jar.isFile() && pluginDiscovery.isUnchanged(jar)) {
+            return;
+        }
 
-                    if (main.getCommandManager().isCommandRegistered(commandName)) {
-                        StreamTextReplacer.getLogger().warn("{} is already registered as a command!", commandName);
-                        continue;
-                    }
+        pluginJars.remove(jarName);
+        List<ReplacerPlugin> oldPlugins = pluginsByJar.getOrDefault(jarName, Collections.emptyList());
+        pluginsByJar.remove(jarName);
 
-                    main.getCommandManager().registerCommand(commandName, command);
+        Set<String> oldCommands = new HashSet<>();
+        if (!oldPlugins.isEmpty()) {
+            for (ReplacerPlugin plugin : oldPlugins) {
+                if (loadedPlugins.remove(plugin.getIdentifier(), plugin)) {
+                    schemas.remove(plugin.getIdentifier());
                 }
+            }
+            updateSourceIndex();
 
-                plugin.onEnable();
+            for (ReplacerPlugin plugin : oldPlugins) {
+                awaitLookup(plugin);
+                disablePlugin(plugin);
+                oldCommands.addAll(commandsByPlugin.getOrDefault(plugin, Collections.emptySet()));
+                commandsByPlugin.remove(plugin);
+            }
+        }
 
-                loadedPlugins.put(plugin.getIdentifier(), plugin);
-            } catch (InstantiationException | IllegalAccessException | InvocationTargetException | NoSuchMethodException e) {
-                e.printStackTrace();
+        List<ReplacerPlugin> newPlugins = Collections.emptyList();
+        if (jar.isFile()) {
+            PluginJar newJar = pluginDiscovery.discover(jar);
+            if (newJar != null) {
+                newPlugins = enableJar(newJar);
             }
+        }else{
+            pluginDiscovery.forget(jarName);
+        }
+
+        // The old plugins' commands stay usable until the new ones replace them.
+        registerCommands(newPlugins, oldCommands);
+        if (oldJar != null) {
+            closeClassLoader(oldJar);
         }
+
+        if (oldPlugins.isEmpty() && newPlugins.isEmpty()) {
+            return;
+        }
+
+        if (!newPlugins.isEmpty()) {
+            updateSourceIndex();
+        }
+
+        RefreshScheduler refreshScheduler = main.getRefreshScheduler();
+        newPlugins.forEach(refreshScheduler::schedule);
+        refreshScheduler.render(getCompiledSources());
+        StreamTextReplacer.getLogger().info("Reloaded {}: {} plugin(s) unloaded, {} loaded.", jarName, oldPlugins.size(), newPlugins.size());
     }
 
-    private List<Class<?>> getClasses(File pluginFolder) {
-        List<Class<?>> list = new ArrayList<>();
+    // Swaps in the sources of a reloaded obs.json and refreshes the ones that were added or changed.
+    // Unchanged sources keep their render state, so nothing is sent to OBS for them.
+    public synchronized void updateSources(Set<SourceKey> changedSources) {
+        updateSourceIndex();
 
-        FilenameFilter fileNameFilter = (dir, name) -> name.endsWith(".jar");
+        RefreshScheduler refreshScheduler = main.getRefreshScheduler();
+        getUsedPlugins().forEach(refreshScheduler::schedule);
+        refreshScheduler.refreshSources(getCompiledSources().stream()
+                .filter(source -> changedSources.contains(source.key()))
+                .toList());
+    }
 
-        File[] jars = pluginFolder.listFiles(fileNameFilter);
-        if (jars == null) {
-            return list;
+    private List<ReplacerPlugin> enableJar(PluginJar pluginJar) {
+        List<ReplacerPlugin> plugins = new ArrayList<>();
+        for (Class<?> clazz : pluginJar.pluginClasses()) {
+            ReplacerPlugin plugin = enablePlugin(clazz);
+            if (plugin != null) {
+                plugins.add(plugin);
+            }
         }
 
-        for (File file : jars) {
+        pluginJars.put(pluginJar.file().getName(), pluginJar);
+        pluginsByJar.put(pluginJar.file().getName(), plugins);
+        return plugins;
+    }
+
+    private ReplacerPlugin enablePlugin(Class<?> clazz) {
+        try {
+            ReplacerPlugin plugin = (ReplacerPlugin)clazz.getConstructor(Logger.class).newInstance(StreamTextReplacer.getLogger());
+            if (loadedPlugins.containsKey(plugin.getIdentifier())) {
+                StreamTextReplacer.getLogger().warn("A plugin with identifier {} is already loaded, skipping {}.", plugin.getIdentifier(), plugin.getName());
+                return null;
+            }
+
+            StreamTextReplacer.getLogger().info("Enabling {}, version {} by {}", plugin.getName(), plugin.getVersion(), plugin.getAuthor());
+            plugin.setDataFolder(new File(pluginsFolder, plugin.getName()));
+            plugin.setPublisher(new HostPublisher(main, this, plugin));
+
+            if (!plugin.onEnable()) {
+                StreamTextReplacer.getLogger().error("{} failed to enable.", plugin.getName());
+                return null;
+            }
+
+            PlaceholderSchema schema;
             try {
-                list = gather(file.toURI().toURL(), list);
-            } catch(Throwable t){
-                StreamTextReplacer.getLogger().error("Plugin {} failed to load.", file.getName());
+                schema = new PlaceholderSchema(plugin);
+            } catch (RuntimeException e) {
+                StreamTextReplacer.getLogger().error("{} declared invalid placeholders.", plugin.getName(), e);
+                disablePlugin(plugin);
+                return null;
             }
+
+            schemas.put(plugin.getIdentifier(), schema);
+            loadedPlugins.put(plugin.getIdentifier(), plugin);
+            return plugin;
+        } catch (InstantiationException | IllegalAccessException | InvocationTargetException | NoSuchMethodException e) {
+            e.printStackTrace();
+        } catch (RuntimeException | LinkageError e) {
+            StreamTextReplacer.getLogger().error("{} failed to enable.", clazz.getName(), e);
         }
 
-        return list;
+        return null;
     }
 
-    private List<Class<?>> gather(URL jar, List<Class<?>> list) {
-        if (list == null) {
-            list = new ArrayList<>();
+    private void disablePlugin(ReplacerPlugin plugin) {
+        StreamTextReplacer.getLogger().info("Disabling {}, version {} by {}", plugin.getName(), plugin.getVersion(), plugin.getAuthor());
+        try {
+            plugin.onDisable();
+        } catch (RuntimeException | LinkageError e) {
+            StreamTextReplacer.getLogger().error("{} failed to disable.", plugin.getName(), e);
         }
+    }
 
-        ClassLoader classLoader = ReplacerPlugin.class.getClassLoader();
+    private void registerCommands(List<ReplacerPlugin> plugins, Set<String> replacedCommands) {
+        Map<String, ConsoleCommand> commands = new LinkedHashMap<>();
+        Map<String, ReplacerPlugin> owners = new HashMap<>();
+        for (ReplacerPlugin plugin : plugins) {
+            for (Map.Entry<String, ConsoleCommand> entry : plugin.getCommandsToRegister().entrySet()) {
+                if (commands.putIfAbsent(entry.getKey(), entry.getValue()) != null) {
+                    StreamTextReplacer.getLogger().warn("{} is already registered as a command!", entry.getKey());
+                    continue;
+                }
 
-        try (URLClassLoader cl = new URLClassLoader(new URL[]{jar}, classLoader);
-             final JarInputStream jarInputStream = new JarInputStream(jar.openStream())) {
+                owners.put(entry.getKey(), plugin);
+            }
+        }
 
-            while (true) {
-                JarEntry jarInputStreamNextJarEntry = jarInputStream.getNextJarEntry();
-                if (jarInputStreamNextJarEntry == null) {
-                    break;
-                }
+        if (commands.isEmpty() && replacedCommands.isEmpty()) {
+            return;
+        }
 
-                String name = jarInputStreamNextJarEntry.getName();
-                if (name.isEmpty()) {
-                    continue;
-                }
+        for (String commandName : main.getCommandManager().swapCommands(replacedCommands, commands)) {
+            commandsByPlugin.computeIfAbsent(owners.get(commandName), key -> new HashSet<>()).add(commandName);
+        }
+    }
 
-                if (name.endsWith(".class")) {
-                    name = name.replace("/", ".");
-                    String cname = name.substring(0, name.lastIndexOf(".class"));
+    // Swaps the index on the scheduler thread, so once this returns no new lookup can start on a removed plugin.
+    private void updateSourceIndex() {
+        SourceIndex index = new SourceIndex(main.getObsConfig().getCompiledSources(), schemas::get);
+        pinPlaceholders(index);
+        main.getRefreshScheduler().runOnSchedulerThread(() -> sourceIndex = index).join();
+    }
 
-                    Class<?> c = cl.loadClass(cname);
-                    if (ReplacerPlugin.class.isAssignableFrom(c)) {
-                        list.add(c);
-                    }
-                }
-            }
-        } catch (IOException | ClassNotFoundException e) {
-            e.printStackTrace();
+    // Keeps every placeholder a source shows in the cache, so the LRU only evicts values nothing renders anymore.
+    private void pinPlaceholders(SourceIndex index) {
+        PlaceholderCache cache = placeholderResolver.getCache();
+        Set<String> placeholders = index.getPlaceholders();
+        if (placeholders.size() > cache.getMaxSize()) {
+            StreamTextReplacer.getLogger().warn("The sources use {} placeholders but placeholderCacheSize is {}, the cache will hold all of them anyway.",
+                    placeholders.size(), cache.getMaxSize());
         }
 
-        return list;
+        cache.setPinned(placeholders);
+    }
+
+    private void awaitLookup(ReplacerPlugin plugin) {
+        try {
+            placeholderResolver.release(plugin).get(UNLOAD_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            StreamTextReplacer.getLogger().warn("{} is still resolving placeholders, disabling it anyway.", plugin.getName());
+        } catch (ExecutionException ignored) {
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // Disables every plugin and closes their class loaders.
+    public synchronized void unloadPlugins() {
+        for (ReplacerPlugin plugin : loadedPlugins.values()) {
+            disablePlugin(plugin);
+        }
+        loadedPlugins.clear();
+        schemas.clear();
+
+        for (PluginJar pluginJar : pluginJars.values()) {
+            closeClassLoader(pluginJar);
+        }
+        pluginJars.clear();
+        pluginsByJar.clear();
+    }
+
+    private static void closeClassLoader(PluginJar pluginJar) {
+        try {
+            pluginJar.classLoader().close();
+        } catch (IOException e) {
+            StreamTextReplacer.getLogger().warn("Could not close {}: {}", pluginJar.file().getName(), e.getMessage());
+        }
     }
 }
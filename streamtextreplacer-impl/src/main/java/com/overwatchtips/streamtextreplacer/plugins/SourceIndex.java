@@ -0,0 +1,107 @@
+// This file is part of the StreamTextReplacer project.
+// Copyright (C) 2022 Fernando Pettinelli
+
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// at your option any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program.  If not, see <https://www.gnu.org/licenses/>.
+
+
+package com.overwatchtips.streamtextreplacer.plugins;
+
+import com.overwatchtips.streamtextreplacer.StreamTextReplacer;
+import com.overwatchtips.streamtextreplacer.api.ReplacerPlugin;
+import com.overwatchtips.streamtextreplacer.records.CompiledSource;
+import com.overwatchtips.streamtextreplacer.templates.PlaceholderSchema;
+import com.overwatchtips.streamtextreplacer.templates.PlaceholderSegment;
+
+import java.util.*;
+import java.util.function.Function;
+
+// The sources bound to the plugins loaded at one point in time, with lookups by plugin and by placeholder.
+// Immutable: when plugins change, a new index is built and swapped in as a whole.
+public final class SourceIndex {
+
+    private final List<CompiledSource> compiledSources;
+    private final Map<ReplacerPlugin, Map<String, PlaceholderSegment>> placeholdersByPlugin = new HashMap<>();
+    // Keyed on the cache key, so a changed value only renders the sources that show it.
+    private final Map<String, List<CompiledSource>> sourcesByPlaceholder = new HashMap<>();
+    private final List<CompiledSource> staticSources;
+    public SourceIndex(List<CompiledSource> sources, Function<String, PlaceholderSchema> schemaLookup) {
+        this.compiledSources = sources.stream()
+                .map(source -> source.bind(schemaLookup))
+                .toList();
+
+        Set<String> unknown = new HashSet<>();
+        for (CompiledSource compiledSource : compiledSources) {
+            for (PlaceholderSegment placeholder : compiledSource.template().getPlaceholders()) {
+                ReplacerPlugin plugin = placeholder.plugin();
+                if (plugin == null) {
+                    if (schemaLookup.apply(placeholder.identifier()) != null && unknown.add(placeholder.raw())) {
+                        StreamTextReplacer.getLogger().warn("{} isn't a placeholder of its plugin, so {} shows it as is.",
+                                placeholder.raw(), compiledSource.sourceName());
+                    }
+                    continue;
+                }
+
+                placeholdersByPlugin.computeIfAbsent(plugin, key -> new LinkedHashMap<>()).putIfAbsent(placeholder.key(), placeholder);
+                List<CompiledSource> placeholderSources = sourcesByPlaceholder.computeIfAbsent(placeholder.key(), key -> new ArrayList<>());
+                if (placeholderSources.isEmpty() || placeholderSources.get(placeholderSources.size() - 1) != compiledSource) {
+                    placeholderSources.add(compiledSource);
+                }
+            }
+        }
+
+        this.staticSources = compiledSources.stream()
+                .filter(source -> source.template().getPlaceholders().stream().allMatch(placeholder -> placeholder.plugin() == null))
+                .toList();
+    }
+
+    public List<CompiledSource> getCompiledSources() {
+        return compiledSources;
+    }
+
+    public List<CompiledSource> getStaticSources() {
+        return staticSources;
+    }
+
+    public Set<ReplacerPlugin> getUsedPlugins() {
+        return Collections.unmodifiableSet(placeholdersByPlugin.keySet());
+    }
+
+    public Collection<PlaceholderSegment> getPlaceholdersOf(ReplacerPlugin plugin) {
+        return placeholdersByPlugin.getOrDefault(plugin, Collections.emptyMap()).values();
+    }
+
+    // Every placeholder bound to a loaded plugin, by cache key.
+    public Set<String> getPlaceholders() {
+        return Collections.unmodifiableSet(sourcesByPlaceholder.keySet());
+    }
+
+    // The sources using any of these placeholders, each listed once.
+    public List<CompiledSource> getSourcesUsing(Collection<String> placeholders) {
+        if (placeholders.size() == 1) {
+            return sourcesByPlaceholder.getOrDefault(placeholders.iterator().next(), Collections.emptyList());
+        }
+
+        Set<CompiledSource> seen = Collections.newSetFromMap(new IdentityHashMap<>());
+        List<CompiledSource> sources = new ArrayList<>();
+        for (String placeholder : placeholders) {
+            for (CompiledSource source : sourcesByPlaceholder.getOrDefault(placeholder, Collections.emptyList())) {
+                if (seen.add(source)) {
+                    sources.add(source);
+                }
+            }
+        }
+
+        return sources;
+    }
+}
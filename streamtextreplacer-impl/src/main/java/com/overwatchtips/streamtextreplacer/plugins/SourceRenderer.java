@@ -0,0 +1,56 @@
+// This file is part of the StreamTextReplacer project.
+// Copyright (C) 2022 Fernando Pettinelli
+
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// at your option any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program.  If not, see <https://www.gnu.org/licenses/>.
+
+
+package com.overwatchtips.streamtextreplacer.plugins;
+
+import com.overwatchtips.streamtextreplacer.output.OutputSink;
+import com.overwatchtips.streamtextreplacer.records.CompiledSource;
+
+import java.util.Collection;
+import java.util.function.Function;
+
+// Renders sources with the cached placeholder values and queues them on their outputs, then flushes every output once.
+// Not thread safe, as the render buffer is reused: only one render may run at a time.
+public class SourceRenderer {
+
+    private final StringBuilder renderBuffer = new StringBuilder();
+    private final PlaceholderResolver placeholderResolver;
+    private final Function<String, OutputSink> outputLookup;
+    private final Collection<OutputSink> outputs;
+    public SourceRenderer(PlaceholderResolver placeholderResolver, Function<String, OutputSink> outputLookup, Collection<OutputSink> outputs) {
+        this.placeholderResolver = placeholderResolver;
+        this.outputLookup = outputLookup;
+        this.outputs = outputs;
+    }
+
+    public void render(Collection<CompiledSource> sources, boolean bypassCache) {
+        for (CompiledSource compiledSource : sources) {
+            OutputSink output = outputLookup.apply(compiledSource.output());
+            if (output == null) {
+                continue;
+            }
+
+            renderBuffer.setLength(0);
+            compiledSource.template().render(renderBuffer, placeholderResolver::getCached);
+            output.queue(compiledSource.sourceName(), renderBuffer.toString(), bypassCache);
+        }
+
+        for (OutputSink output : outputs) {
+            output.flush();
+        }
+    }
+}
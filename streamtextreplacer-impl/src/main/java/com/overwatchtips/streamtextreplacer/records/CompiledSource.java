@@ -0,0 +1,39 @@
+// This file is part of the StreamTextReplacer project.
+// Copyright (C) 2022 Fernando Pettinelli
+
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// at your option any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program.  If not, see <https://www.gnu.org/licenses/>.
+
+
+package com.overwatchtips.streamtextreplacer.records;
+
+import com.overwatchtips.streamtextreplacer.templates.CompiledTemplate;
+import com.overwatchtips.streamtextreplacer.templates.PlaceholderSchema;
+
+import java.util.function.Function;
+
+// output is the name of the OBS instance or file output the source belongs to.
+public record CompiledSource(String output, OBSSource source, CompiledTemplate template) {
+
+    public CompiledSource bind(Function<String, PlaceholderSchema> schemaLookup) {
+        return new CompiledSource(output, source, template.bind(schemaLookup));
+    }
+
+    public String sourceName() {
+        return source.sourceName();
+    }
+
+    public SourceKey key() {
+        return new SourceKey(output, source.sourceName());
+    }
+}
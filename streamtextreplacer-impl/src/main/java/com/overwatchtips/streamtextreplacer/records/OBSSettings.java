@@ -16,7 +16,69 @@
 
 package com.overwatchtips.streamtextreplacer.records;
 
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
+// instances lists the OBS instances to drive, each with its own sources. If it's empty, the single
+// instance described by address, webSocketPassword, passwordProtected and customSources is used.
+// fileOutputs lists folders to write sources to as text files. Output names must be unique across both.
+// pluginDeadline is how long a tick waits for a plugin (milliseconds) before using its cached values.
+// pluginDeadlines overrides it per plugin identifier.
+// placeholderCacheSize is how many resolved placeholders are kept before the least recently used are evicted.
+// Placeholders a source still shows are never evicted, so the cache grows past it if the sources use more.
+// metricsPort is the local port the Prometheus endpoint listens on, or 0 to disable it.
+// controlSocket is the path of a Unix domain socket that accepts commands, or empty to disable it.
 public record OBSSettings(String address, String webSocketPassword, boolean passwordProtected,
-                          Set<OBSSource> customSources) {}
+                          Set<OBSSource> customSources,
+                          long pluginDeadline, Map<String, Long> pluginDeadlines,
+                          int placeholderCacheSize, int metricsPort, String controlSocket,
+                          List<OBSEndpoint> instances, List<FileOutput> fileOutputs) {
+
+    public static final long DEFAULT_PLUGIN_DEADLINE = 2000;
+    public static final int DEFAULT_PLACEHOLDER_CACHE_SIZE = 10000;
+    public static final String DEFAULT_INSTANCE = "default";
+
+    public OBSSettings {
+        if (customSources == null) {
+            customSources = Collections.emptySet();
+        }
+
+        if (instances == null) {
+            instances = Collections.emptyList();
+        }
+
+        if (fileOutputs == null) {
+            fileOutputs = Collections.emptyList();
+        }
+
+        if (pluginDeadline <= 0) {
+            pluginDeadline = DEFAULT_PLUGIN_DEADLINE;
+        }
+
+        if (pluginDeadlines == null) {
+            pluginDeadlines = Collections.emptyMap();
+        }
+
+        if (placeholderCacheSize <= 0) {
+            placeholderCacheSize = DEFAULT_PLACEHOLDER_CACHE_SIZE;
+        }
+
+        if (controlSocket == null) {
+            controlSocket = "";
+        }
+    }
+
+    public long getDeadline(String identifier) {
+        return pluginDeadlines.getOrDefault(identifier, pluginDeadline);
+    }
+
+    public List<OBSEndpoint> allInstances() {
+        if (!instances.isEmpty()) {
+            return instances;
+        }
+
+        return List.of(new OBSEndpoint(DEFAULT_INSTANCE, address, webSocketPassword, passwordProtected, customSources));
+    }
+}
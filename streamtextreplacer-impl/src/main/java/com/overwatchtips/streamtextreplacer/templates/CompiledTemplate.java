@@ -0,0 +1,81 @@
+// This file is part of the StreamTextReplacer project.
+// Copyright (C) 2022 Fernando Pettinelli
+
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// at your option any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program.  If not, see <https://www.gnu.org/licenses/>.
+
+package com.overwatchtips.streamtextreplacer.templates;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Function;
+
+public final class CompiledTemplate {
+
+    private final List<TemplateSegment> segments;
+    private final List<PlaceholderSegment> placeholders;
+
+    CompiledTemplate(List<TemplateSegment> segments) {
+        this.segments = Collections.unmodifiableList(segments);
+
+        List<PlaceholderSegment> placeholders = new ArrayList<>();
+        for (TemplateSegment segment : segments) {
+            if (segment instanceof PlaceholderSegment placeholder) {
+                placeholders.add(placeholder);
+            }
+        }
+        this.placeholders = Collections.unmodifiableList(placeholders);
+    }
+
+    // Returns a copy of this template with every placeholder pointing at its plugin and handle.
+    // Placeholders whose plugin isn't loaded or doesn't support them stay unbound and render as their raw token.
+    public CompiledTemplate bind(Function<String, PlaceholderSchema> schemaLookup) {
+        List<TemplateSegment> bound = new ArrayList<>(segments.size());
+        for (TemplateSegment segment : segments) {
+            if (segment instanceof PlaceholderSegment placeholder) {
+                bound.add(placeholder.bind(schemaLookup.apply(placeholder.identifier())));
+            }else{
+                bound.add(segment);
+            }
+        }
+
+        return new CompiledTemplate(bound);
+    }
+
+    // Appends the rendered text to the buffer. If the resolver returns null, the raw token is kept.
+    public void render(StringBuilder buffer, Function<PlaceholderSegment, String> resolver) {
+        for (TemplateSegment segment : segments) {
+            if (segment instanceof LiteralSegment literal) {
+                buffer.append(literal.text());
+                continue;
+            }
+
+            PlaceholderSegment placeholder = (PlaceholderSegment) segment;
+            String value = placeholder.plugin() == null ? null : resolver.apply(placeholder);
+            buffer.append(value == null ? placeholder.raw() : value);
+        }
+    }
+
+    public boolean isLiteral() {
+        return placeholders.isEmpty();
+    }
+
+    public List<TemplateSegment> getSegments() {
+        return segments;
+    }
+
+    public List<PlaceholderSegment> getPlaceholders() {
+        return placeholders;
+    }
+}
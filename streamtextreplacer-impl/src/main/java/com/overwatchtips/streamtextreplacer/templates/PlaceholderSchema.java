@@ -0,0 +1,68 @@
+// This file is part of the StreamTextReplacer project.
+// Copyright (C) 2022 Fernando Pettinelli
+
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// at your option any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program.  If not, see <https://www.gnu.org/licenses/>.
+
+package com.overwatchtips.streamtextreplacer.templates;
+
+import com.overwatchtips.streamtextreplacer.api.PlaceholderHandle;
+import com.overwatchtips.streamtextreplacer.api.ReplacerPlugin;
+
+import java.util.Locale;
+import java.util.Map;
+
+// The placeholders a plugin declared, read once when it's enabled and used to bind templates to it.
+// A plugin that declares nothing accepts any params, which are passed to onRequest.
+public final class PlaceholderSchema {
+
+    private final ReplacerPlugin plugin;
+    private final Map<String, PlaceholderHandle> handles;
+    public PlaceholderSchema(ReplacerPlugin plugin) {
+        this.plugin = plugin;
+        this.handles = Map.copyOf(plugin.getPlaceholders());
+    }
+
+    // The handle for these params, or null if the plugin doesn't support them.
+    // Params are matched as written first, then in lower case.
+    public PlaceholderHandle find(String args) {
+        if (handles.isEmpty()) {
+            return sameCycle -> plugin.onRequest(args, sameCycle);
+        }
+
+        String key = keyOf(args);
+        return key == null ? null : handles.get(key);
+    }
+
+    // The declared params these args match, as find matches them, or null if the plugin doesn't support them.
+    // A plugin that declares nothing gets the args as written.
+    public String keyOf(String args) {
+        if (handles.isEmpty() || handles.containsKey(args)) {
+            return args;
+        }
+
+        String lowerCase = args.toLowerCase(Locale.ROOT);
+        return handles.containsKey(lowerCase) ? lowerCase : null;
+    }
+
+    // The key the value of these args is cached under, e.g. %overtrack_rating% for both Rating and rating,
+    // so a template and a publisher that write the params differently share the value. Null if they aren't supported.
+    public String cacheKey(String args) {
+        String key = keyOf(args);
+        return key == null ? null : "%" + plugin.getIdentifier() + "_" + key + "%";
+    }
+
+    public ReplacerPlugin getPlugin() {
+        return plugin;
+    }
+}
@@ -0,0 +1,36 @@
+// This file is part of the StreamTextReplacer project.
+// Copyright (C) 2022 Fernando Pettinelli
+
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// at your option any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program.  If not, see <https://www.gnu.org/licenses/>.
+
+package com.overwatchtips.streamtextreplacer.templates;
+
+import com.overwatchtips.streamtextreplacer.api.PlaceholderHandle;
+import com.overwatchtips.streamtextreplacer.api.ReplacerPlugin;
+
+// raw is the whole token including the % characters, e.g. %overtrack_rating%.
+// key is what the value is cached under, see PlaceholderSchema.cacheKey.
+// key, plugin and handle stay null until the template is bound to the loaded plugins,
+// and if the plugin isn't loaded or doesn't support these args.
+public record PlaceholderSegment(String raw, String identifier, String args, String key, ReplacerPlugin plugin, PlaceholderHandle handle) implements TemplateSegment {
+
+    public PlaceholderSegment bind(PlaceholderSchema schema) {
+        PlaceholderHandle handle = schema == null ? null : schema.find(args);
+        if (handle == null) {
+            return new PlaceholderSegment(raw, identifier, args, null, null, null);
+        }
+
+        return new PlaceholderSegment(raw, identifier, args, schema.cacheKey(args), schema.getPlugin(), handle);
+    }
+}
@@ -0,0 +1,97 @@
+// This file is part of the StreamTextReplacer project.
+// Copyright (C) 2022 Fernando Pettinelli
+
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// at your option any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program.  If not, see <https://www.gnu.org/licenses/>.
+
+package com.overwatchtips.streamtextreplacer.templates;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public final class TemplateCompiler {
+
+    private static final char SEPARATOR = '%';
+
+    private TemplateCompiler() {}
+
+    public static CompiledTemplate compile(String text) {
+        return new CompiledTemplate(tokenize(text));
+    }
+
+    // Splits a source text into literal and placeholder segments.
+    // A placeholder is %identifier_args% with no whitespace inside. "%%" is kept as is, as it always was,
+    // and any other % that doesn't open a valid placeholder is kept as literal text.
+    static List<TemplateSegment> tokenize(String text) {
+        List<TemplateSegment> segments = new ArrayList<>();
+        StringBuilder literal = new StringBuilder();
+
+        int position = 0;
+        while (position < text.length()) {
+            char current = text.charAt(position);
+            if (current != SEPARATOR) {
+                literal.append(current);
+                position++;
+                continue;
+            }
+
+            if (position + 1 < text.length() && text.charAt(position + 1) == SEPARATOR) {
+                literal.append(SEPARATOR).append(SEPARATOR);
+                position += 2;
+                continue;
+            }
+
+            int end = text.indexOf(SEPARATOR, position + 1);
+            int split = end < 0 ? -1 : findSplit(text, position + 1, end);
+            if (split < 0) {
+                literal.append(SEPARATOR);
+                position++;
+                continue;
+            }
+
+            if (!literal.isEmpty()) {
+                segments.add(new LiteralSegment(literal.toString()));
+                literal.setLength(0);
+            }
+
+            segments.add(new PlaceholderSegment(text.substring(position, end + 1),
+                    text.substring(position + 1, split),
+                    text.substring(split + 1, end),
+                    null, null, null));
+            position = end + 1;
+        }
+
+        if (!literal.isEmpty()) {
+            segments.add(new LiteralSegment(literal.toString()));
+        }
+
+        return segments;
+    }
+
+    // Returns the index of the _ between the identifier and the args, or -1 if this isn't a placeholder.
+    private static int findSplit(String text, int start, int end) {
+        int split = -1;
+        for (int i = start; i < end; i++) {
+            char c = text.charAt(i);
+            if (Character.isWhitespace(c)) {
+                return -1;
+            }
+
+            if (c == '_' && split < 0) {
+                split = i;
+            }
+        }
+
+        return split > start && split < end - 1 ? split : -1;
+    }
+}
@@ -0,0 +1,54 @@
+// This file is part of the StreamTextReplacer project.
+// Copyright (C) 2022 Fernando Pettinelli
+
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// at your option any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program.  If not, see <https://www.gnu.org/licenses/>.
+
+package com.overwatchtips.streamtextreplacer.threads;
+
+import com.overwatchtips.streamtextreplacer.StreamTextReplacer;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+
+// Reads commands from stdin on its own thread and hands them to the CommandManager, so waiting for
+// input never holds up anything else. Stops when stdin is closed, e.g. when running as a service.
+public class ConsoleReader implements Runnable {
+
+    private final StreamTextReplacer main;
+    private final Thread thread;
+    public ConsoleReader(StreamTextReplacer main) {
+        this.main = main;
+
+        this.thread = new Thread(this, "ConsoleReader");
+        this.thread.setDaemon(true);
+    }
+
+    public void start() {
+        thread.start();
+    }
+
+    @Override
+    public void run() {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(System.in));
+        try {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                main.getCommandManager().dispatch(line);
+            }
+        } catch (IOException e) {
+            StreamTextReplacer.getLogger().warn("Stopped reading commands from the console: {}", e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,106 @@
+// This file is part of the StreamTextReplacer project.
+// Copyright (C) 2022 Fernando Pettinelli
+
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// at your option any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program.  If not, see <https://www.gnu.org/licenses/>.
+
+
+package com.overwatchtips.streamtextreplacer.threads;
+
+import com.overwatchtips.streamtextreplacer.StreamTextReplacer;
+
+import java.io.IOException;
+import java.nio.file.*;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+import static java.nio.file.StandardWatchEventKinds.*;
+
+// Watches a folder and calls onChange for every matching file that was created, modified or deleted.
+// Changes are only reported once the folder has been quiet for a moment, so a file that's still
+// being written isn't read half-written, and an editor saving several times only counts once.
+public class FileWatcher implements Runnable {
+
+    private static final long QUIET_MILLIS = 1000;
+
+    private final Path folder;
+    private final Predicate<String> fileFilter;
+    private final Consumer<Path> onChange;
+    private final WatchService watchService;
+    private final Thread thread;
+    public FileWatcher(String name, Path folder, Predicate<String> fileFilter, Consumer<Path> onChange) throws IOException {
+        this.folder = folder;
+        this.fileFilter = fileFilter;
+        this.onChange = onChange;
+        this.watchService = FileSystems.getDefault().newWatchService();
+        this.folder.register(watchService, ENTRY_CREATE, ENTRY_MODIFY, ENTRY_DELETE);
+
+        this.thread = new Thread(this, name);
+        this.thread.setDaemon(true);
+    }
+
+    public void start() {
+        thread.start();
+    }
+
+    @Override
+    public void run() {
+        Set<String> changed = new LinkedHashSet<>();
+        try {
+            while (true) {
+                WatchKey key = changed.isEmpty() ? watchService.take() : watchService.poll(QUIET_MILLIS, TimeUnit.MILLISECONDS);
+                if (key == null) {
+                    changed.forEach(this::notifyChange);
+                    changed.clear();
+                    continue;
+                }
+
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    if (event.kind() == OVERFLOW) {
+                        StreamTextReplacer.getLogger().warn("Missed some changes in {}, a restart may be needed to pick them up.", folder);
+                        continue;
+                    }
+
+                    String name = event.context().toString();
+                    if (fileFilter.test(name)) {
+                        changed.add(name);
+                    }
+                }
+
+                if (!key.reset()) {
+                    StreamTextReplacer.getLogger().warn("{} can no longer be watched, changes to it won't be picked up.", folder);
+                    return;
+                }
+            }
+        } catch (InterruptedException | ClosedWatchServiceException ignored) {
+        }
+    }
+
+    private void notifyChange(String fileName) {
+        try {
+            onChange.accept(folder.resolve(fileName));
+        } catch (RuntimeException e) {
+            StreamTextReplacer.getLogger().error("Failed to apply the changes to {}.", fileName, e);
+        }
+    }
+
+    public void close() {
+        try {
+            watchService.close();
+        } catch (IOException ignored) {
+        }
+    }
+}
@@ -0,0 +1,215 @@
+// This file is part of the StreamTextReplacer project.
+// Copyright (C) 2022 Fernando Pettinelli
+
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// at your option any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program.  If not, see <https://www.gnu.org/licenses/>.
+
+
+package com.overwatchtips.streamtextreplacer.threads;
+
+import com.overwatchtips.streamtextreplacer.StreamTextReplacer;
+import com.overwatchtips.streamtextreplacer.api.ReplacerPlugin;
+import com.overwatchtips.streamtextreplacer.plugins.PlaceholderCache;
+import com.overwatchtips.streamtextreplacer.plugins.PluginManager;
+import com.overwatchtips.streamtextreplacer.records.CompiledSource;
+import com.overwatchtips.streamtextreplacer.templates.PlaceholderSegment;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.*;
+
+// Refreshes each plugin on its own schedule, so the thread only wakes up when some plugin is due.
+// Rendering always happens on this scheduler's single thread. After a lookup only the sources using a
+// placeholder whose value changed are rendered, so a tick costs nothing for the other sources.
+public class RefreshScheduler {
+
+    // How soon a plugin that resolved nothing is retried, unless its refresh time is shorter.
+    private static final long FAILURE_RETRY_MILLIS = 1000;
+    // Floor for plugins overriding getRefreshTimeMillis, so one returning 0 doesn't keep a thread busy.
+    private static final long MIN_REFRESH_MILLIS = 100;
+
+    private final StreamTextReplacer main;
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(runnable -> new Thread(runnable, "RefreshScheduler"));
+    private final Set<ReplacerPlugin> revalidating = new HashSet<>();
+    private final Set<ReplacerPlugin> scheduled = new HashSet<>();
+    public RefreshScheduler(StreamTextReplacer main) {
+        this.main = main;
+    }
+
+    public void start() {
+        PluginManager pluginManager = main.getPluginManager();
+        executor.execute(() -> pluginManager.renderSources(pluginManager.getStaticSources(), false));
+
+        for (ReplacerPlugin plugin : pluginManager.getUsedPlugins()) {
+            schedule(plugin);
+        }
+    }
+
+    // Starts refreshing a plugin, e.g. one that was just loaded. A plugin is refreshed until
+    // it's no longer used by any source.
+    public void schedule(ReplacerPlugin plugin) {
+        executor.execute(() -> {
+            if (scheduled.add(plugin)) {
+                refresh(plugin);
+            }
+        });
+    }
+
+    public CompletableFuture<Void> runOnSchedulerThread(Runnable task) {
+        return CompletableFuture.runAsync(task, executor);
+    }
+
+    public void runOnSchedulerThread(Runnable task, long delayMillis) {
+        try {
+            executor.schedule(task, delayMillis, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException ignored) {
+            // Shutting down, so there's nothing left to run it for.
+        }
+    }
+
+    // Looks up every placeholder right away and sends every source, even unchanged ones.
+    public void refreshAll() {
+        executor.execute(() -> {
+            PluginManager pluginManager = main.getPluginManager();
+            CompletableFuture<?>[] lookups = pluginManager.getUsedPlugins().stream()
+                    .map(this::lookup)
+                    .toArray(CompletableFuture[]::new);
+
+            CompletableFuture.allOf(lookups).thenRunAsync(() -> {
+                pluginManager.getPlaceholderResolver().drainChanged();
+                pluginManager.renderSources(pluginManager.getCompiledSources(), true);
+            }, executor);
+        });
+    }
+
+    // Renders the sources, first looking up any of their placeholders that were never resolved.
+    public void refreshSources(Collection<CompiledSource> sources) {
+        if (sources.isEmpty()) {
+            return;
+        }
+
+        executor.execute(() -> {
+            PluginManager pluginManager = main.getPluginManager();
+            PlaceholderCache cache = pluginManager.getPlaceholderResolver().getCache();
+            CompletableFuture<?>[] lookups = sources.stream()
+                    .flatMap(source -> source.template().getPlaceholders().stream())
+                    .filter(placeholder -> placeholder.plugin() != null && !cache.contains(placeholder.key()))
+                    .map(PlaceholderSegment::plugin)
+                    .distinct()
+                    .map(this::lookup)
+                    .toArray(CompletableFuture[]::new);
+
+            CompletableFuture.allOf(lookups).thenRunAsync(() -> {
+                pluginManager.renderSources(sources, false);
+                renderChangedSources();
+            }, executor);
+        });
+    }
+
+    // Refreshes a plugin whose cached values went stale, outside its regular schedule.
+    public void revalidate(ReplacerPlugin plugin) {
+        executor.execute(() -> {
+            if (!revalidating.add(plugin)) {
+                return;
+            }
+
+            lookup(plugin).whenCompleteAsync((resolved, throwable) -> {
+                revalidating.remove(plugin);
+                renderChangedSources();
+            }, executor);
+        });
+    }
+
+    private void refresh(ReplacerPlugin plugin) {
+        if (!main.getPluginManager().getUsedPlugins().contains(plugin)) {
+            scheduled.remove(plugin);
+            return;
+        }
+
+        long start = System.nanoTime();
+        lookup(plugin).whenCompleteAsync((resolved, throwable) -> {
+            try {
+                renderChangedSources();
+                main.getMetrics().recordTick(System.nanoTime() - start);
+            } finally {
+                long delay = getRefreshInterval(plugin);
+                if (!Boolean.TRUE.equals(resolved)) {
+                    delay = Math.min(delay, FAILURE_RETRY_MILLIS);
+                }
+                // No point waking up before the plugin's breaker lets a probe through.
+                delay = Math.max(delay, main.getPluginManager().getPlaceholderResolver().getBreaker(plugin).getRetryDelayMillis());
+
+                executor.schedule(() -> refresh(plugin), delay, TimeUnit.MILLISECONDS);
+            }
+        }, executor);
+    }
+
+    // How often the plugin is refreshed.
+    public static long getRefreshInterval(ReplacerPlugin plugin) {
+        return Math.max(MIN_REFRESH_MILLIS, plugin.getRefreshTimeMillis());
+    }
+
+    // Resolves the plugin's placeholders, but stops waiting once its deadline passes.
+    // A late result still gets rendered when it arrives.
+    private CompletableFuture<Boolean> lookup(ReplacerPlugin plugin) {
+        PluginManager pluginManager = main.getPluginManager();
+        if (!pluginManager.getUsedPlugins().contains(plugin)) {
+            return CompletableFuture.completedFuture(false);
+        }
+
+        CompletableFuture<Boolean> lookup = pluginManager.getPlaceholderResolver().resolve(plugin, pluginManager.getPlaceholdersOf(plugin));
+        long deadline = main.getObsConfig().getObsSettings().getDeadline(plugin.getIdentifier());
+
+        return lookup.copy().orTimeout(deadline, TimeUnit.MILLISECONDS).handle((resolved, throwable) -> {
+            if (throwable == null) {
+                return resolved;
+            }
+
+            Throwable cause = throwable instanceof CompletionException ? throwable.getCause() : throwable;
+            if (cause instanceof TimeoutException) {
+                StreamTextReplacer.getLogger().warn("{} missed its deadline, so cached values were used instead.", plugin.getName());
+                lookup.thenRunAsync(this::renderChangedSources, executor);
+                return true;
+            }
+
+            StreamTextReplacer.getLogger().error("{} failed while resolving placeholders.", plugin.getName(), cause);
+            return false;
+        });
+    }
+
+    public void render(Collection<CompiledSource> sources) {
+        if (sources.isEmpty()) {
+            return;
+        }
+
+        executor.execute(() -> main.getPluginManager().renderSources(sources, false));
+    }
+
+    // Renders the sources using a placeholder whose value changed, e.g. one a plugin published.
+    public void renderChanged() {
+        executor.execute(this::renderChangedSources);
+    }
+
+    private void renderChangedSources() {
+        PluginManager pluginManager = main.getPluginManager();
+        Set<String> changed = pluginManager.getPlaceholderResolver().drainChanged();
+        if (!changed.isEmpty()) {
+            pluginManager.renderSources(pluginManager.getSourcesUsing(changed), false);
+        }
+    }
+
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,122 @@
+// This file is part of the StreamTextReplacer project.
+// Copyright (C) 2022 Fernando Pettinelli
+
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// at your option any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program.  If not, see <https://www.gnu.org/licenses/>.
+
+
+package com.overwatchtips.streamtextreplacer.templates;
+
+import com.overwatchtips.streamtextreplacer.api.PlaceholderHandle;
+import com.overwatchtips.streamtextreplacer.api.ReplacerPlugin;
+import com.overwatchtips.streamtextreplacer.metrics.Metrics;
+import com.overwatchtips.streamtextreplacer.plugins.PlaceholderResolver;
+import org.apache.logging.log4j.LogManager;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PlaceholderSchemaTest {
+
+    private final PlaceholderSchema schema = new PlaceholderSchema(new MixedCasePlugin());
+    private final PlaceholderResolver placeholderResolver = new PlaceholderResolver(16, new Metrics(), placeholder -> {});
+
+    @AfterEach
+    void tearDown() {
+        placeholderResolver.shutdown();
+    }
+
+    @Test
+    void templatesAndPublishersShareTheKey() {
+        PlaceholderSegment placeholder = bind("%OverTrack_Rating%");
+
+        assertSame(schema.getPlugin(), placeholder.plugin());
+        assertEquals("%OverTrack_rating%", placeholder.key());
+        assertEquals(placeholder.key(), schema.cacheKey("rating"));
+        assertEquals(placeholder.key(), schema.cacheKey("RATING"));
+    }
+
+    @Test
+    void publishedValuesAreRendered() {
+        CompiledTemplate template = TemplateCompiler.compile("SR: %OverTrack_Rating%").bind(identifier -> schema);
+
+        placeholderResolver.put(schema.getPlugin(), schema.cacheKey("rating"), "3500");
+
+        StringBuilder buffer = new StringBuilder();
+        template.render(buffer, placeholderResolver::getCached);
+        assertEquals("SR: 3500", buffer.toString());
+        assertTrue(placeholderResolver.drainChanged().contains(template.getPlaceholders().get(0).key()));
+    }
+
+    @Test
+    void unknownParamsAreLeftUnbound() {
+        PlaceholderSegment placeholder = bind("%OverTrack_level%");
+
+        assertNull(placeholder.plugin());
+        assertNull(placeholder.key());
+        assertNull(schema.cacheKey("level"));
+    }
+
+    private PlaceholderSegment bind(String text) {
+        return TemplateCompiler.compile(text).bind(identifier -> identifier.equals("OverTrack") ? schema : null)
+                .getPlaceholders().get(0);
+    }
+
+    private static class MixedCasePlugin extends ReplacerPlugin {
+
+        private MixedCasePlugin() {
+            super(LogManager.getLogger());
+        }
+
+        @Override
+        public String getName() {
+            return "OverTrack";
+        }
+
+        @Override
+        public String getAuthor() {
+            return "StreamTextReplacer tests";
+        }
+
+        @Override
+        public String getIdentifier() {
+            return "OverTrack";
+        }
+
+        @Override
+        public String getVersion() {
+            return "1.0.0";
+        }
+
+        @Override
+        public boolean onEnable() {
+            return true;
+        }
+
+        @Override
+        public void onDisable() {}
+
+        @Override
+        public long getRefreshTime() {
+            return 30;
+        }
+
+        @Override
+        public Map<String, PlaceholderHandle> getPlaceholders() {
+            return Map.of("rating", sameCycle -> "3500");
+        }
+    }
+}
@@ -0,0 +1,84 @@
+// This file is part of the StreamTextReplacer project.
+// Copyright (C) 2022 Fernando Pettinelli
+
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// at your option any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program.  If not, see <https://www.gnu.org/licenses/>.
+
+
+package com.overwatchtips.streamtextreplacer.templates;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TemplateCompilerTest {
+
+    @Test
+    void doublePercentIsKeptAsIs() {
+        assertEquals(List.of(literal("100%% sure")), TemplateCompiler.tokenize("100%% sure"));
+        assertEquals(List.of(literal("%%")), TemplateCompiler.tokenize("%%"));
+    }
+
+    @Test
+    void doublePercentDoesNotOpenAPlaceholder() {
+        assertEquals(List.of(literal("%%overtrack_rating%")), TemplateCompiler.tokenize("%%overtrack_rating%"));
+    }
+
+    @Test
+    void unterminatedPlaceholderIsLiteral() {
+        assertEquals(List.of(literal("50% off")), TemplateCompiler.tokenize("50% off"));
+        assertEquals(List.of(literal("SR: %overtrack_rating")), TemplateCompiler.tokenize("SR: %overtrack_rating"));
+    }
+
+    @Test
+    void placeholdersWithoutIdentifierOrArgsAreLiteral() {
+        assertEquals(List.of(literal("%_rating%")), TemplateCompiler.tokenize("%_rating%"));
+        assertEquals(List.of(literal("%overtrack_%")), TemplateCompiler.tokenize("%overtrack_%"));
+        assertEquals(List.of(literal("%overtrack%")), TemplateCompiler.tokenize("%overtrack%"));
+        assertEquals(List.of(literal("%over track_rating%")), TemplateCompiler.tokenize("%over track_rating%"));
+    }
+
+    @Test
+    void adjacentPlaceholdersAreSplit() {
+        assertEquals(List.of(placeholder("overtrack", "wins"), placeholder("overtrack", "losses")),
+                TemplateCompiler.tokenize("%overtrack_wins%%overtrack_losses%"));
+        assertEquals(List.of(placeholder("overtrack", "wins"), literal("/"), placeholder("overtrack", "losses")),
+                TemplateCompiler.tokenize("%overtrack_wins%/%overtrack_losses%"));
+    }
+
+    @Test
+    void argsKeepTheirUnderscores() {
+        assertEquals(List.of(literal("Started at "), placeholder("overtrack", "starting_rating"), literal(" SR")),
+                TemplateCompiler.tokenize("Started at %overtrack_starting_rating% SR"));
+    }
+
+    @Test
+    void literalTemplateRendersUnchanged() {
+        CompiledTemplate template = TemplateCompiler.compile("100%% static");
+        StringBuilder buffer = new StringBuilder();
+        template.render(buffer, placeholder -> "unused");
+
+        assertTrue(template.isLiteral());
+        assertEquals("100%% static", buffer.toString());
+    }
+
+    private static LiteralSegment literal(String text) {
+        return new LiteralSegment(text);
+    }
+
+    private static PlaceholderSegment placeholder(String identifier, String args) {
+        return new PlaceholderSegment("%" + identifier + "_" + args + "%", identifier, args, null, null, null);
+    }
+}